@@ -36,7 +36,11 @@ public class Actions {
     }
     
     static void pickup(GameUI gui, Predicate<Gob> filter, int limit) {
-	List<ITarget> targets = gui.ui.sess.glob.oc.stream()
+	pickup(gui, gui.ui.sess.glob.oc.stream(), filter, limit);
+    }
+    
+    private static void pickup(GameUI gui, Stream<Gob> gobs, Predicate<Gob> filter, int limit) {
+	List<ITarget> targets = gobs
 	    .filter(filter)
 	    .filter(gob -> PositionHelper.distanceToPlayer(gob) <= CFG.AUTO_PICK_RADIUS.get())
 	    .filter(BotUtil::isOnRadar)
@@ -52,11 +56,11 @@ public class Actions {
     }
     
     public static void pickup(GameUI gui) {
-	pickup(gui, gobIs(GobTag.PICKUP));
+	pickup(gui, gui.ui.sess.glob.oc.tagindex.tagged(GobTag.PICKUP).stream(), gobIs(GobTag.PICKUP), Integer.MAX_VALUE);
     }
     
     public static void openGate(GameUI gui) {
-	List<ITarget> targets = gui.ui.sess.glob.oc.stream()
+	List<ITarget> targets = gui.ui.sess.glob.oc.tagindex.tagged(GobTag.GATE).stream()
 	    .filter(gobIs(GobTag.GATE))
 	    .filter(gob -> !gob.isVisitorGate())
 	    .filter(gob -> PositionHelper.distanceToPlayer(gob) <= 35)
@@ -136,8 +140,8 @@ public class Actions {
     }
     
     public static void selectFlower(GameUI gui, long gobid, String option) {
-	List<ITarget> targets = gui.ui.sess.glob.oc.stream()
-	    .filter(gob -> gob.id == gobid)
+	List<ITarget> targets = Stream.of(gui.ui.sess.glob.oc.getgob(gobid))
+	    .filter(Objects::nonNull)
 	    .map(GobTarget::new)
 	    .collect(Collectors.toList());
 	
@@ -187,7 +191,7 @@ public class Actions {
     }
     
     public static void aggroAll(GameUI gui) {
-	aggro(gui, getNearest(gui, Integer.MAX_VALUE, 165, gobIs(GobTag.PLAYER), gobIs(GobTag.AGGRO_TARGET), GobHelper::isNotFriendlySteed));
+	aggro(gui, getNearestOf(gui, gui.ui.sess.glob.oc.tagindex.tagged(GobTag.PLAYER), Integer.MAX_VALUE, 165, gobIs(GobTag.AGGRO_TARGET), GobHelper::isNotFriendlySteed));
     }
     
     static void aggro(GameUI gui, List<ITarget> targets) {
@@ -4,14 +4,25 @@ import haven.*;
 import rx.functions.Action2;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
-public class Bot implements Defer.Callable<Void> {
+public class Bot {
     private static final Object lock = new Object();
+    /* Bots spend nearly all their time parked on game events, so they
+     * get threads of their own instead of holding up the shared
+     * workers that build map meshes and minimap tiles. */
+    private static final ExecutorService runtime = Executors.newCachedThreadPool(task -> {
+	Thread th = new HackThread(task, "Bot thread");
+	th.setDaemon(true);
+	return th;
+    });
     private static Bot current;
     private final List<ITarget> targets;
     private BotAction[] actions;
-    private Defer.Future<Void> task;
+    private Future<?> task;
     private boolean highlight = true;
     private boolean cancelled = false;
     private String message = null;
@@ -47,7 +58,6 @@ public class Bot implements Defer.Callable<Void> {
 	return this;
     }
     
-    @Override
     public Void call() throws InterruptedException {
 	if(setup != null) {
 	    for (BotAction action : setup) {
@@ -76,8 +86,15 @@ public class Bot implements Defer.Callable<Void> {
     }
     
     private void run(Action2<Boolean, String> callback) {
-	task = Defer.later(this);
-	task.callback(() -> callback.call(task.cancelled(), message));
+	task = runtime.submit(() -> {
+	    boolean failed = false;
+	    try {
+		call();
+	    } catch (Throwable t) {
+		failed = true;
+	    }
+	    callback.call(failed, message);
+	});
     }
     
     private void checkCancelled() throws InterruptedException {
@@ -88,7 +105,7 @@ public class Bot implements Defer.Callable<Void> {
     
     private void markCancelled() {
 	cancelled = true;
-	task.cancel();
+	if(task != null) {task.cancel(true);}
     }
     
     public void cancel(String message) {
@@ -2,12 +2,11 @@ package auto;
 
 import haven.*;
 import haven.rx.Reactor;
+import rx.Subscription;
 
 import java.util.function.Supplier;
 
 public class BotUtil {
-    private static final Object waiter = new Object();
-    
     private static boolean isHeld(GameUI gui, String what) throws Loading {
 	GameUI.DraggedItem drag = gui.hand();
 	if(drag == null && what == null) {
@@ -19,62 +18,42 @@ public class BotUtil {
 	return false;
     }
     
-    static boolean waitHeld(GameUI gui, String what) {
-	if(Boolean.TRUE.equals(doWaitLoad(() -> isHeld(gui, what)))) {
-	    return true;
-	}
-	if(waitHeldChanged(gui)) {
-	    return Boolean.TRUE.equals(doWaitLoad(() -> isHeld(gui, what)));
-	}
-	return false;
+    static boolean waitHeld(GameUI gui, String what) throws InterruptedException {
+	return gui.heldNotifier.until(() -> Boolean.TRUE.equals(doWaitLoad(() -> isHeld(gui, what))), 5000);
     }
     
     static final Bot.BotAction WaitHeldChanged = (t, b) -> {
-	boolean result = waitHeldChanged(b.gui());
-	if(!result) {b.cancel();}
+	GameUI gui = b.gui();
+	gui.heldNotifier.await(gui.heldNotifier.gen(), 5000);
     };
     
-    private static boolean waitHeldChanged(GameUI gui) {
-	boolean result = true;
-	try {
-	    synchronized (gui.heldNotifier) {
-		gui.heldNotifier.wait(5000);
-	    }
-	} catch (InterruptedException e) {
-	    result = false;
-	}
-	return result;
-    }
-    
+    /* Parks on the pending Loading itself rather than polling, for
+     * those that can be waited for. */
     private static <T> T doWaitLoad(Supplier<T> action) {
-	T result = null;
-	boolean ready = false;
-	while (!ready) {
+	while (true) {
 	    try {
-		result = action.get();
-		ready = true;
+		return action.get();
 	    } catch (Loading e) {
-		pause(100);
+		try {
+		    try {
+			e.waitfor();
+		    } catch (Loading.UnwaitableEvent u) {
+			pause(100);
+		    }
+		} catch (InterruptedException i) {
+		    Thread.currentThread().interrupt();
+		    throw e;
+		}
 	    }
 	}
-	return result;
     }
     
     static Bot.BotAction doWait(long ms) {
 	return (t, b) -> pause(ms);
     }
     
-    static void pause(long ms) {
-	synchronized (waiter) {
-	    try {
-		waiter.wait(ms);
-	    } catch (InterruptedException ignore) {
-	    }
-	}
-    }
-    
-    private static void unpause() {
-	synchronized (waiter) { waiter.notifyAll(); }
+    static void pause(long ms) throws InterruptedException {
+	Thread.sleep(ms);
     }
     
     static boolean isOnRadar(Gob gob) {
@@ -94,12 +73,19 @@ public class BotUtil {
     static Bot.BotAction selectFlower(String... options) {
 	return (target, bot) -> {
 	    if(target.hasMenu()) {
+		Signal chosen = new Signal();
+		Subscription[] choice = {null};
 		FlowerMenu.lastTarget(target);
-		Reactor.FLOWER.first().subscribe(flowerMenu -> {
-		    Reactor.FLOWER_CHOICE.first().subscribe(choice -> unpause());
+		Subscription menu = Reactor.FLOWER.first().subscribe(flowerMenu -> {
+		    choice[0] = Reactor.FLOWER_CHOICE.first().subscribe(c -> chosen.fire());
 		    flowerMenu.forceChoose(options);
 		});
-		pause(5000);
+		try {
+		    chosen.await(0, 5000);
+		} finally {
+		    menu.unsubscribe();
+		    if(choice[0] != null) {choice[0].unsubscribe();}
+		}
 	    }
 	};
     }
@@ -2,6 +2,8 @@ package auto;
 
 import haven.*;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.function.Function;
@@ -11,35 +13,59 @@ import java.util.stream.Stream;
 
 public class GobHelper {
     static List<ITarget> getNearest(GameUI gui, String name, int limit, double distance) {
-	return getGobs(gui, limit, PositionHelper.byDistanceToPlayer, gobIs(name), gob -> PositionHelper.distanceToPlayer(gob) <= distance);
+	return getNearestOf(gui, gui.ui.sess.glob.oc.tagindex.containing(name), limit, distance);
     }
     
     static List<ITarget> getNearest(GameUI gui, int limit, double distance, GobTag... tags) {
-	return getGobs(gui, limit, PositionHelper.byDistanceToPlayer, gobIsAny(tags), gob -> PositionHelper.distanceToPlayer(gob) <= distance);
+	return getNearestToPoint(gui, limit, playerPos(gui), distance, gobIsAny(tags));
     }
     
     @SafeVarargs
     static List<ITarget> getNearest(GameUI gui, int limit, double distance, Predicate<Gob>... filters) {
-	Predicate<Gob> distFilter = gob -> PositionHelper.distanceToPlayer(gob) <= distance;
-	if(filters == null || filters.length == 0) {
-	    filters = new Predicate[]{distFilter};
-	} else {
-	    filters = Utils.extend(filters, filters.length + 1);
-	    filters[filters.length - 1] = distFilter;
-	}
-	return getGobs(gui, limit, PositionHelper.byDistanceToPlayer, filters);
+	return getNearestToPoint(gui, limit, playerPos(gui), distance, filters);
     }
     
     @SafeVarargs
     static List<ITarget> getNearestToPoint(GameUI gui, int limit, Coord2d pos, double distance, Predicate<Gob>... filters) {
-	Predicate<Gob> distFilter = g -> PositionHelper.distanceToCoord(pos, g) <= distance;
-	if(filters == null || filters.length == 0) {
-	    filters = new Predicate[]{distFilter};
-	} else {
-	    filters = Utils.extend(filters, filters.length + 1);
-	    filters[filters.length - 1] = distFilter;
+	if(pos == null) {return Collections.emptyList();}
+	Predicate<Gob> filter = all(filters);
+	/* Like the oc.stream() scan this replaced, this only considers
+	 * networked gobs, not local ones. */
+	return gui.ui.sess.glob.oc.index.nearest(pos, limit, distance, filter).stream()
+	    .map(GobTarget::new)
+	    .collect(Collectors.toList());
+    }
+    
+    /* Like getNearest, but choosing among the given candidates, as
+     * found through OCache.tagindex, instead of all gobs. */
+    @SafeVarargs
+    static List<ITarget> getNearestOf(GameUI gui, Collection<Gob> gobs, int limit, double distance, Predicate<Gob>... filters) {
+	Coord2d pos = playerPos(gui);
+	if(pos == null) {return Collections.emptyList();}
+	Stream<Gob> stream = gobs.stream().filter(g -> PositionHelper.distanceToCoord(pos, g) <= distance);
+	for (Predicate<Gob> filter : filters) {
+	    stream = stream.filter(filter);
 	}
-	return getGobs(gui, limit, Comparator.comparingDouble(g -> PositionHelper.distanceToCoord(pos, g)), filters);
+	return stream
+	    .sorted(Comparator.comparingDouble(g -> PositionHelper.distanceToCoord(pos, g)))
+	    .limit(limit)
+	    .map(GobTarget::new)
+	    .collect(Collectors.toList());
+    }
+    
+    private static Coord2d playerPos(GameUI gui) {
+	Gob p = gui.ui.sess.glob.oc.getgob(gui.plid);
+	return (p == null) ? null : p.rc;
+    }
+    
+    private static Predicate<Gob> all(Predicate<Gob>[] filters) {
+	if(filters == null || filters.length == 0) {return null;}
+	return gob -> {
+	    for (Predicate<Gob> filter : filters) {
+		if(!filter.test(gob)) {return false;}
+	    }
+	    return true;
+	};
     }
     
     private static List<ITarget> getNearest(GameUI gui, int limit, Function<Gob, Double> meter, double distance, GobTag... tags) {
@@ -62,20 +88,14 @@ public class GobHelper {
     static Bot.BotAction waitGobNoPose(Gob gob, long timeout, String... poses) {
 	return (t, b) -> {
 	    if(gob == null) {return;}
-	    final long started = System.currentTimeMillis();
-	    while (System.currentTimeMillis() - started < timeout && !gob.disposed() && gob.hasPose(poses)) {
-		BotUtil.pause(100);
-	    }
+	    gob.glob.oc.changed.until(() -> gob.disposed() || !gob.hasPose(poses), timeout);
 	};
     }
     
     static Bot.BotAction waitGobPose(Gob gob, long timeout, String... poses) {
 	return (t, b) -> {
 	    if(gob == null) {return;}
-	    final long started = System.currentTimeMillis();
-	    while (System.currentTimeMillis() - started < timeout && !gob.disposed() && !gob.hasPose(poses)) {
-		BotUtil.pause(100);
-	    }
+	    gob.glob.oc.changed.until(() -> gob.disposed() || gob.hasPose(poses), timeout);
 	};
     }
     
@@ -83,15 +103,6 @@ public class GobHelper {
 	return !gob.occupants.stream().anyMatch(g -> g.anyOf(GobTag.ME, GobTag.PARTY));
     }
     
-    private static Predicate<Gob> gobIs(String what) {
-	return g -> {
-	    if(g == null) {return false;}
-	    String id = g.resid();
-	    if(id == null) {return false;}
-	    return id.contains(what);
-	};
-    }
-    
     public static Predicate<Gob> gobIs(GobTag what) {
 	return g -> {
 	    if(g == null) {return false;}
@@ -64,7 +64,7 @@ public class BAttrWnd extends Widget {
 	    this.res = Resource.local().loadwait("gfx/hud/chr/" + attr);
 	    this.nm = attr;
 	    this.rnm = attrf.render(res.flayer(Resource.tooltip).t);
-	    this.img = new TexI(convolve(res.flayer(Resource.imgc).img, new Coord(this.sz.y, this.sz.y), iconfilter));
+	    this.img = new TexI(convolve(res.flayer(Resource.imgc).img(), new Coord(this.sz.y, this.sz.y), iconfilter));
 	    this.attr = glob.getcattr(attr);
 	    this.bg = bg;
 	}
@@ -423,7 +423,7 @@ public class BAttrWnd extends Widget {
 		    BufferedImage ln = Text.render(String.format("%s: %s", ev.nm, Utils.odformat2(el.a, 2)), col).img;
 		    Resource.Image icon = el.res.get().layer(Resource.imgc);
 		    if(icon != null)
-			ln = ItemInfo.catimgsh(5, convolve(icon.img, new Coord(ln.getHeight(), ln.getHeight()), iconfilter), ln);
+			ln = ItemInfo.catimgsh(5, convolve(icon.img(), new Coord(ln.getHeight(), ln.getHeight()), iconfilter), ln);
 		    cur = ItemInfo.catimgs(0, cur, ln);
 		    sum += el.a;
 		}
@@ -0,0 +1,108 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/* Reference-counted byte buffers, recycled by power-of-two size
+ * class. Messages are viewed directly out of these buffers, and a
+ * buffer is only put back once every view holding a reference to it
+ * has released it. A view that is never released simply leaves its
+ * buffer to the GC, so forgetting to release is safe whereas
+ * releasing too often is not. */
+public class BufPool {
+    public static final int MINBITS = 8, MAXBITS = 16;
+    public final int maxfree;
+    private final BlockingQueue<Buf>[] free;
+    private final AtomicLong allocs = new AtomicLong(), reuses = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public BufPool(int maxfree) {
+	this.maxfree = maxfree;
+	int n = MAXBITS - MINBITS + 1;
+	free = new BlockingQueue[n];
+	for(int i = 0; i < n; i++)
+	    free[i] = new ArrayBlockingQueue<>(maxfree);
+    }
+
+    public class Buf {
+	public final byte[] data;
+	private final int cls;
+	private final AtomicInteger refs = new AtomicInteger(1);
+
+	private Buf(int cls) {
+	    this.cls = cls;
+	    this.data = new byte[1 << (cls + MINBITS)];
+	}
+
+	public void retain() {
+	    if(refs.getAndIncrement() <= 0)
+		throw(new IllegalStateException("retained released buffer"));
+	}
+
+	public void release() {
+	    int r = refs.decrementAndGet();
+	    if(r == 0) {
+		free[cls].offer(this);
+	    } else if(r < 0) {
+		throw(new IllegalStateException("buffer released too many times"));
+	    }
+	}
+    }
+
+    private static int sizeclass(int len) {
+	int cls = 0;
+	while((1 << (cls + MINBITS)) < len)
+	    cls++;
+	return(cls);
+    }
+
+    /* Returns a buffer of at least len bytes, holding one reference
+     * on behalf of the caller. */
+    public Buf get(int len) {
+	if(len > (1 << MAXBITS))
+	    throw(new IllegalArgumentException("buffer too large: " + len));
+	int cls = sizeclass(len);
+	Buf ret = free[cls].poll();
+	if(ret == null) {
+	    allocs.incrementAndGet();
+	    return(new Buf(cls));
+	}
+	reuses.incrementAndGet();
+	ret.refs.set(1);
+	return(ret);
+    }
+
+    public String stats() {
+	int nf = 0;
+	for(Queue<Buf> q : free)
+	    nf += q.size();
+	return(String.format("%,d/%,d, %d free", reuses.get(), allocs.get(), nf));
+    }
+}
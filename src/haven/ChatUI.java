@@ -1335,7 +1335,7 @@ public class ChatUI extends Widget {
 			sz = Coord.of(iconsz, (iconsz * img.sz.y) / img.sz.x);
 		    else
 			sz = Coord.of((iconsz * img.sz.x) / img.sz.y, iconsz);
-		    ricon = new TexI(PUtils.uiscale(img.img, sz));
+		    ricon = new TexI(PUtils.uiscale(img.img(), sz));
 		    icon = img;
 		}
 		return(ricon);
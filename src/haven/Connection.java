@@ -35,6 +35,12 @@ import java.nio.channels.*;
 public class Connection {
     private static final double ACK_HOLD = 0.030;
     private static final double OBJACK_HOLD = 0.08, OBJACK_HOLD_MAX = 0.5;
+    private static final double RTO_INIT = 0.08, RTO_MIN = 0.05, RTO_MAX = 2.0;
+    private static final int MTU = 1000;
+    public static final Config.Variable<Integer> relwnd = Config.Variable.propi("haven.relwnd", 32);
+    public static final Config.Variable<Double> relflush = Config.Variable.propf("haven.relflush", 0.005);
+    public static final Config.Variable<Integer> maxfrag = Config.Variable.propi("haven.maxfrag", 16 << 20);
+    public static final BufPool rpool = new BufPool(256);
     public final SocketAddress server;
     public final String username;
     private final Collection<Callback> cbs = new ArrayList<>();
@@ -44,10 +50,21 @@ public class Connection {
     private Worker worker;
     private int tseq;
     private boolean alive = true;
+    private long fragmsgs, fragbytes, relretx, relmsgs, relpkts;
+    private int unsent = 0;
+    private double srtt = -1, rttvar = 0, rto = RTO_INIT;
 
+    /* A null server makes an offline connection, which can only be
+     * used to replay session traces. */
     public Connection(SocketAddress server, String username) {
 	this.server = server;
 	this.username = username;
+	if(server == null) {
+	    sk = null;
+	    sel = null;
+	    key = null;
+	    return;
+	}
 	try {
 	    this.sk = DatagramChannel.open();
 	    try {
@@ -66,6 +83,9 @@ public class Connection {
 	}
     }
 
+    /* Messages and deltas passed to callbacks may be views of pooled
+     * receive buffers, and are only valid until the callback returns
+     * unless the callback retains them. */
     public static interface Callback {
 	public default void closed() {};
 	public default void handle(PMessage msg) {};
@@ -111,8 +131,10 @@ public class Connection {
 			cb.closed();
 		} finally {
 		    try {
-			sk.close();
-			sel.close();
+			if(sk != null) {
+			    sk.close();
+			    sel.close();
+			}
 		    } catch(IOException e) {
 			throw(new RuntimeException(e));
 		    }
@@ -138,7 +160,14 @@ public class Connection {
 	return(alive && (worker != null));
     }
 
-    private final ByteBuffer recvbuf = ByteBuffer.allocate(65536);
+    public String stats() {
+	return(String.format("rtt %.0f (%.0f) ms, rto %.0f ms, rel %,d/%,d, retx %,d, frag %,d (%,d B), pool %s",
+			     Math.max(srtt, 0) * 1000, rttvar * 1000, rto * 1000, relmsgs, relpkts, relretx, fragmsgs, fragbytes, rpool.stats()));
+    }
+
+    private final ByteBuffer recvbuf = ByteBuffer.allocateDirect(65536);
+    /* The returned message is a view of a pooled buffer, and must be
+     * released when handled. */
     private PMessage recv() throws IOException {
 	recvbuf.clear();
 	int ret = sk.read(recvbuf);
@@ -149,13 +178,18 @@ public class Connection {
 	} else {
 	    recvbuf.flip();
 	    byte type = recvbuf.get();
-	    byte[] buf = new byte[recvbuf.remaining()];
-	    recvbuf.get(buf);
-	    return(new PMessage(type, buf));
+	    int len = recvbuf.remaining();
+	    BufPool.Buf buf = rpool.get(len);
+	    recvbuf.get(buf.data, 0, len);
+	    PMessage msg = new PMessage(type, buf.data, 0, len);
+	    msg.pbuf = buf;
+	    return(msg);
 	}
     }
 
     public void send(ByteBuffer msg) {
+	if(sk == null)
+	    return;
 	try {
 	    sk.write(msg);
 	} catch(IOException e) {
@@ -186,7 +220,8 @@ public class Connection {
     }
 
     private void wake() {
-	sel.wakeup();
+	if(sel != null)
+	    sel.wakeup();
     }
 
     private final List<RMessage> pending = new LinkedList<>();
@@ -228,16 +263,22 @@ public class Connection {
 		    try {
 			if(select(Math.max(0.0, last + 2 - now))) {
 			    PMessage msg = recv();
-			    if((msg != null) && (msg.type == Session.MSG_SESS)) {
-				int error = msg.uint8();
-				if(error == 0) {
-				    result = 0;
-				    return(new Main());
-				} else {
-				    this.result = error;
-				    if(error == Session.SESSERR_MESG)
-					message = msg.string();
-				    return(null);
+			    if(msg != null) {
+				try {
+				    if(msg.type == Session.MSG_SESS) {
+					int error = msg.uint8();
+					if(error == 0) {
+					    result = 0;
+					    return(new Main());
+					} else {
+					    this.result = error;
+					    if(error == Session.SESSERR_MESG)
+						message = msg.string();
+					    return(null);
+					}
+				    }
+				} finally {
+				    msg.release();
 				}
 			    }
 			}
@@ -273,11 +314,12 @@ public class Connection {
 
     private class Main implements Task {
 	private final Map<Short, RMessage> waiting = new HashMap<>();
-	private final Map<Long, ObjAck> objacks = new HashMap<>();
+	private final LongMap<ObjAck> objacks = new LongMap<>();
+	private final Deque<Integer> inflight = new ArrayDeque<>();
 	private double now, lasttx;
 	private short rseq, ackseq;
 	private double acktime = -1;
-	private byte[] fragbuf = null;
+	private MessageBuf fragbuf = null;
 	private int fragtype;
 
 	private void handlerel(PMessage msg) {
@@ -286,19 +328,21 @@ public class Connection {
 		if((head & 0x80) == 0) {
 		    if(fragbuf != null)
 			throw(new Session.MessageException("Got start fragment while still defragmenting", msg));
-		    fragbuf = msg.bytes();
+		    fragbuf = new MessageBuf();
 		    fragtype = head;
+		    addfrag(msg);
 		} else {
 		    if((head == 0x80) || (head == 0x81)) {
-			byte[] frag = msg.bytes();
-			byte[] curbuf = fragbuf;
-			byte[] newbuf = new byte[curbuf.length + frag.length];
-			System.arraycopy(curbuf, 0, newbuf, 0, curbuf.length);
-			System.arraycopy(frag, 0, newbuf, curbuf.length, frag.length);
-			fragbuf = newbuf;
+			if(fragbuf == null)
+			    throw(new Session.MessageException("Got continuation fragment without start", msg));
+			addfrag(msg);
 			if(head == 0x81) {
-			    PMessage nmsg = new PMessage(fragtype, fragbuf);
+			    /* Hand the reassembly buffer over as-is
+			     * rather than copying it once more. */
+			    PMessage nmsg = new PMessage(fragtype, fragbuf.wbuf, 0, fragbuf.wh);
 			    fragbuf = null;
+			    fragmsgs++;
+			    fragbytes += nmsg.rem();
 			    handlerel(nmsg);
 			}
 		    } else {
@@ -312,17 +356,42 @@ public class Connection {
 	}
 
 	private void gotrel(RMessage msg) {
+	    try {
+		gotrel0(msg);
+	    } finally {
+		msg.release();
+	    }
+	}
+
+	private void addfrag(PMessage msg) {
+	    int len = msg.rt - msg.rh;
+	    if(fragbuf.wh + len > maxfrag.get()) {
+		fragbuf = null;
+		throw(new Session.MessageException("Fragmented message exceeds " + maxfrag.get() + " bytes", msg));
+	    }
+	    fragbuf.addbytes(msg.rbuf, msg.rh, len);
+	    msg.rh = msg.rt;
+	}
+
+	private void gotrel0(RMessage msg) {
 	    short sd = (short)(msg.seq - rseq);
 	    if(sd == 0) {
 		short lastack;
-		do {
-		    handlerel(msg);
+		handlerel(msg);
+		lastack = rseq++;
+		while((msg = waiting.remove(rseq)) != null) {
+		    try {
+			handlerel(msg);
+		    } finally {
+			msg.release();
+		    }
 		    lastack = rseq++;
-		    msg = waiting.remove(rseq);
-		} while(msg != null);
+		}
 		sendack(lastack);
 	    } else if(sd > 0) {
-		waiting.put((short)msg.seq, msg);
+		RMessage prev = waiting.put((short)msg.seq, msg.retain());
+		if(prev != null)
+		    prev.release();
 	    }
 	}
 
@@ -332,16 +401,37 @@ public class Connection {
 	    ackseq = seq;
 	}
 
+	/* Jacobson/Karels estimation, only sampling messages that
+	 * were not retransmitted, per Karn. */
+	private void rttsample(double r) {
+	    if(srtt < 0) {
+		srtt = r;
+		rttvar = r / 2;
+	    } else {
+		rttvar = (0.75 * rttvar) + (0.25 * Math.abs(srtt - r));
+		srtt = (0.875 * srtt) + (0.125 * r);
+	    }
+	    rto = Utils.clip(srtt + (4 * rttvar), RTO_MIN, RTO_MAX);
+	}
+
 	private void gotack(short seq) {
 	    synchronized(pending) {
+		double sample = -1;
 		for(Iterator<RMessage> i = pending.iterator(); i.hasNext();) {
 		    RMessage msg = i.next();
 		    short sd = (short)(msg.seq - seq);
-		    if(sd <= 0)
+		    if(sd <= 0) {
+			if(msg.retx == 1)
+			    sample = now - msg.last;
 			i.remove();
-		    else
+		    } else {
 			break;
+		    }
 		}
+		if(sample >= 0)
+		    rttsample(sample);
+		while(!inflight.isEmpty() && ((short)(inflight.peek() - seq) <= 0))
+		    inflight.remove();
 	    }
 	}
 
@@ -350,7 +440,7 @@ public class Connection {
 		cb.mapdata(msg);
 	}
 
-	private void gotobjdata(Message msg) {
+	private void gotobjdata(PMessage msg) {
 	    while(!msg.eom()) {
 		int fl = msg.uint8();
 		long id = msg.uint32();
@@ -378,15 +468,20 @@ public class Connection {
 			    len = msg.uint16();
 			}
 		    }
-		    OCache.AttrDelta attr = new OCache.AttrDelta(delta, type, msg, len);
 		    if(type == OCache.OD_REM) {
+			msg.skip(len);
 			delta.rem = true;
 		    } else {
-			delta.attrs.add(attr);
+			delta.attrs.add(new OCache.AttrDelta(delta, type, msg, len));
 		    }
 		}
-		for(Callback cb : cbs)
-		    cb.handle(delta);
+		try {
+		    for(Callback cb : cbs)
+			cb.handle(delta);
+		} finally {
+		    for(OCache.AttrDelta attr : delta.attrs)
+			attr.release();
+		}
 		ObjAck ack = objacks.get(id);
 		if(ack == null) {
 		    objacks.put(id, ack = new ObjAck(id, fr, now));
@@ -410,9 +505,9 @@ public class Connection {
 		    int type = msg.uint8();
 		    RMessage rmsg;
 		    if((type & 0x80) != 0) {
-			rmsg = new RMessage(type & 0x7f, msg.bytes(msg.uint16()));
+			rmsg = new RMessage(type & 0x7f, msg, msg.uint16());
 		    } else {
-			rmsg = new RMessage(type, msg.bytes());
+			rmsg = new RMessage(type, msg, msg.rem());
 		    }
 		    rmsg.seq = seq++;
 		    gotrel(rmsg);
@@ -438,33 +533,76 @@ public class Connection {
 	    return((a < 0) ? b : Math.min(a, b));
 	}
 
+	/* Sends the given run of consecutive messages as one
+	 * datagram. A lone message uses the plain encoding, and runs
+	 * use length-prefixed sub-messages. */
+	private void sendrel(List<RMessage> batch) {
+	    PMessage rmsg = new PMessage(Session.MSG_REL);
+	    rmsg.adduint16(batch.get(0).seq);
+	    if(batch.size() == 1) {
+		RMessage msg = batch.get(0);
+		rmsg.adduint8(msg.type).addbytes(msg.wbuf, 0, msg.wh);
+	    } else {
+		for(RMessage msg : batch)
+		    rmsg.adduint8(msg.type | 0x80).adduint16(msg.wh).addbytes(msg.wbuf, 0, msg.wh);
+	    }
+	    send(rmsg);
+	    for(RMessage msg : batch) {
+		if(msg.retx > 0)
+		    relretx++;
+		else
+		    unsent -= msg.wh + 3;
+		msg.last = now;
+		msg.retx++;
+	    }
+	    relmsgs += batch.size();
+	    relpkts++;
+	    inflight.add(batch.get(batch.size() - 1).seq);
+	    batch.clear();
+	    lasttx = now;
+	}
+
 	private double sendpending() {
 	    double mint = -1;
 	    synchronized(pending) {
+		List<RMessage> batch = new ArrayList<>();
+		int bsz = 0, nseq = -1;
 		for(RMessage msg : pending) {
 		    double txtime;
-		    if(msg.retx == 0)
+		    if(msg.retx == 0) {
+			/* Unsent messages all follow the sent ones, so
+			 * a full window blocks the rest as well. Acks
+			 * will wake us up again. Otherwise, they are
+			 * held for a little while so that bursts can be
+			 * sent together, unless they fill a datagram
+			 * already. */
+			if(inflight.size() >= relwnd.get())
+			    break;
+			if(batch.isEmpty() && (unsent < MTU)) {
+			    double flush = msg.last + relflush.get();
+			    if(now < flush) {
+				mint = min2(mint, flush);
+				break;
+			    }
+			}
 			txtime = 0;
-		    else if(msg.retx <= 1)
-			txtime = 0.08;
-		    else if(msg.retx <= 3)
-			txtime = 0.20;
-		    else if(msg.retx <= 9)
-			txtime = 0.62;
-		    else
-			txtime = 2.00;
-		    txtime = msg.last + txtime;
+		    } else {
+			txtime = msg.last + Math.min(rto * (1 << Math.min(msg.retx - 1, 8)), RTO_MAX);
+		    }
 		    if(now >= txtime) {
-			PMessage rmsg = new PMessage(Session.MSG_REL);
-			rmsg.adduint16(msg.seq).adduint8(msg.type).addbytes(msg.fin());
-			send(rmsg);
-			msg.last = now;
-			msg.retx++;
-			lasttx = now;
+			if(!batch.isEmpty() && ((msg.seq != nseq) || (bsz + msg.wh + 3 > MTU))) {
+			    sendrel(batch);
+			    bsz = 0;
+			}
+			batch.add(msg);
+			bsz += msg.wh + 3;
+			nseq = (msg.seq + 1) & 0xffff;
 		    } else {
 			mint = min2(mint, txtime);
 		    }
 		}
+		if(!batch.isEmpty())
+		    sendrel(batch);
 	    }
 	    return(mint);
 	}
@@ -513,9 +651,13 @@ public class Connection {
 		    if(readable) {
 			PMessage msg;
 			while((msg = recv()) != null) {
-			    if(msg.type == Session.MSG_CLOSE)
-				return(new Close(true));
-			    handlemsg(msg);
+			    try {
+				if(msg.type == Session.MSG_CLOSE)
+				    return(new Close(true));
+				handlemsg(msg);
+			    } finally {
+				msg.release();
+			    }
 			}
 		    }
 		} catch(ClosedByInterruptException | CancelledKeyException | InterruptedException e) {
@@ -562,8 +704,11 @@ public class Connection {
 		try {
 		    if(select(Math.max(0.0, last + 0.5 - now))) {
 			PMessage msg = recv();
-			if((msg != null) && (msg.type == Session.MSG_CLOSE))
-			    sawclose = true;
+			if(msg != null) {
+			    if(msg.type == Session.MSG_CLOSE)
+				sawclose = true;
+			    msg.release();
+			}
 		    }
 		} catch(ClosedByInterruptException | CancelledKeyException e) {
 		    /* XXX: I'm not really sure what causes
@@ -583,14 +728,71 @@ public class Connection {
 	}
     }
 
+    private class Replay implements Task {
+	private final SessionTrace.Reader trace;
+	private final boolean realtime;
+
+	private Replay(SessionTrace.Reader trace, boolean realtime) {
+	    this.trace = trace;
+	    this.realtime = realtime;
+	}
+
+	public Task run() {
+	    double start = Utils.rtime();
+	    try {
+		SessionTrace.Event ev;
+		while((ev = trace.next()) != null) {
+		    if(realtime) {
+			long wait = (long)((start + ev.time - Utils.rtime()) * 1000);
+			if(wait > 0)
+			    Thread.sleep(wait);
+		    } else {
+			Utils.checkirq();
+		    }
+		    /* There is no one to send to, so just drop
+		     * anything the client queues. */
+		    synchronized(pending) {
+			pending.clear();
+			unsent = 0;
+		    }
+		    for(Callback cb : cbs)
+			ev.dispatch(cb);
+		}
+	    } catch(InterruptedException e) {
+	    } catch(IOException e) {
+		new Warning(e, "session trace replay failed").issue();
+	    } finally {
+		try {
+		    trace.close();
+		} catch(IOException e) {
+		}
+	    }
+	    return(null);
+	}
+    }
+
+    /* Feeds a recorded trace to the callbacks from the connection
+     * thread, either at the recorded pace or as fast as possible. */
+    public void replay(SessionTrace.Reader trace, boolean realtime) {
+	start(new Replay(trace, realtime));
+    }
+
     public void queuemsg(PMessage pmsg) {
 	RMessage msg = new RMessage(pmsg);
+	boolean wake;
 	synchronized(pending) {
 	    msg.seq = tseq;
 	    tseq = (tseq + 1) & 0xffff;
+	    /* Until it is sent, last is when the message was queued. */
+	    msg.last = Utils.rtime();
 	    pending.add(msg);
+	    /* Only the first unsent message sets a new deadline, and
+	     * filling a datagram needs no deadline. */
+	    wake = (unsent == 0) || ((unsent < MTU) && (unsent + msg.wh + 3 >= MTU));
+	    unsent += msg.wh + 3;
 	}
-	wake();
+	if(wake)
+	    wake();
     }
 
     public static class SessionError extends RuntimeException {
@@ -135,7 +135,7 @@ public class CraftDBWnd extends WindowX implements DTarget2 {
 	for (int i = 0; i < modes.length; i++) {
 	    Resource res = modes[i].res.get();
 	    tabStrip.insert(i,
-		new TexI(PUtils.convolvedown(res.layer(Resource.imgc).img, ICON_SZ, CharWnd.iconfilter)),
+		new TexI(PUtils.convolvedown(res.layer(Resource.imgc).img(), ICON_SZ, CharWnd.iconfilter)),
 		paginafor(modes[i].res).button().act().name, null).tag = modes[i];
 	}
     
@@ -397,7 +397,7 @@ public class CraftDBWnd extends WindowX implements DTarget2 {
 		List<Pagina> parents = getParents(p);
 		Collections.reverse(parents);
 		for(Pagina item : parents) {
-		    BufferedImage img = item.res().layer(Resource.imgc).img;
+		    BufferedImage img = item.res().layer(Resource.imgc).img();
 		    Resource.AButton act = item.button().act();
 		    String name = "...";
 		    if(act != null) {
@@ -410,7 +410,7 @@ public class CraftDBWnd extends WindowX implements DTarget2 {
 	    }
 	} else {
 	    crumbs.add(Breadcrumbs.Crumb.fromPagina(paginafor(mode.res)));
-	    BufferedImage img = Resource.remote().loadwait("paginae/act/inspect").layer(Resource.imgc).img;
+	    BufferedImage img = Resource.remote().loadwait("paginae/act/inspect").layer(Resource.imgc).img();
 	    crumbs.add(new Breadcrumbs.Crumb<>(img, filter.line(), CRAFT));
 	}
 	breadcrumbs.setCrumbs(crumbs);
@@ -650,7 +650,7 @@ public class CraftDBWnd extends WindowX implements DTarget2 {
 		Tex tex = null;
 		Resource res = p.res();
 		if(res != null) {
-		    BufferedImage icon = PUtils.convolvedown(res.layer(Resource.imgc).img, ICON_SZ, CharWnd.iconfilter);
+		    BufferedImage icon = PUtils.convolvedown(res.layer(Resource.imgc).img(), ICON_SZ, CharWnd.iconfilter);
 		    
 		    Resource.AButton act = p.button().acts();
 		    String name = "...";
@@ -96,7 +96,7 @@ public class CraftWindow extends GameUI.Hidewnd {
 	    TabStrip.Button<Pagina> old = tabs.get(resName);
 	    tabStrip.remove(old);
 	}
-	Tex icon = new TexI(PUtils.convolvedown(pagina.res.get().layer(Resource.imgc).img, new Coord(20, 20), CharWnd.iconfilter));
+	Tex icon = new TexI(PUtils.convolvedown(pagina.res.get().layer(Resource.imgc).img(), new Coord(20, 20), CharWnd.iconfilter));
 	String text = pagina.button().act().name;
 	if(text.length() > 12) {
 	    text = text.substring(0, 12 - 2) + "..";
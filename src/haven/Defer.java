@@ -33,10 +33,7 @@ import java.util.concurrent.atomic.*;
 
 public class Defer extends ThreadGroup {
     private static final Map<ThreadGroup, Defer> groups = new WeakHashMap<ThreadGroup, Defer>();
-    private final Queue<Future<?>> queue = new PrioQueue<Future<?>>();
-    private final Collection<Thread> pool = new LinkedList<Thread>();
-    private final int maxthreads = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
-    private final AtomicInteger busy = new AtomicInteger(0);
+    public final WorkPool workers = new WorkPool(this, "Worker thread");
     
     public interface Callable<T> {
 	public T call() throws InterruptedException;
@@ -119,6 +116,7 @@ public class Defer extends ThreadGroup {
 	private Throwable exc = null;
 	private Loading lastload = null;
 	private volatile Thread running = null;
+	private WorkPool.Ticket ticket = null;
 	
 	private Future(Callable<T> task) {
 	    this.task = task;
@@ -155,7 +153,6 @@ public class Defer extends ThreadGroup {
 		running = Thread.currentThread();
 	    }
 	    try {
-		busy.getAndIncrement();
 		val = task.call();;
 		lastload = null;
 		chstate("done");
@@ -175,7 +172,6 @@ public class Defer extends ThreadGroup {
 		    else if(callback != null) {callback.run();}
 		    running = null;
 		}
-		busy.getAndDecrement();
 		/* XXX: This is a race; a cancelling thread could have
 		 * gotten the thread reference via running and then
 		 * interrupt this thread after interrupted()
@@ -227,47 +223,10 @@ public class Defer extends ThreadGroup {
 	
 	public void boostprio(int prio) {
 	    synchronized(this) {
-		if(this.prio < prio)
+		if(this.prio < prio) {
 		    this.prio = prio;
-	    }
-	}
-    }
-
-    private static final AtomicInteger threadno = new AtomicInteger(0);
-    private class Worker extends HackThread {
-	private Worker() {
-	    super(Defer.this, null, "Worker thread #" + threadno.getAndIncrement());
-	    setDaemon(true);
-	    setPriority((Thread.NORM_PRIORITY + Thread.MIN_PRIORITY) / 2);
-	}
-	
-	public void run() {
-	    try {
-		while(true) {
-		    Future<?> f;
-		    try {
-			long start = System.currentTimeMillis();
-			synchronized(queue) {
-			    while((f = queue.poll()) == null) {
-				if(System.currentTimeMillis() - start > 5000)
-				    return;
-				queue.wait(1000);
-			    }
-			}
-		    } catch(InterruptedException e) {
-			return;
-		    }
-		    f.run();
-		    f = null;
-		}
-	    } finally {
-		synchronized(queue) {
-		    pool.remove(this);
-		    if((pool.size() < 1) && !queue.isEmpty()) {
-			Thread n = new Worker();
-			n.start();
-			pool.add(n);
-		    }
+		    if((ticket != null) && ticket.queued())
+			ticket = ticket.promote(WorkPool.Lane.of(prio));
 		}
 	    }
 	}
@@ -278,15 +237,8 @@ public class Defer extends ThreadGroup {
     }
 
     private void defer(final Future<?> f) {
-	synchronized(queue) {
-	    boolean e = queue.isEmpty();
-	    queue.add(f);
-	    queue.notify();
-	    if((pool.isEmpty() || !e) && (pool.size() < maxthreads)) {
-		Thread n = new Worker();
-		n.start();
-		pool.add(n);
-	    }
+	synchronized(f) {
+	    f.ticket = workers.submit(f, WorkPool.Lane.of(f.prio));
 	}
     }
 
@@ -308,6 +260,10 @@ public class Defer extends ThreadGroup {
 	return(d);
     }
 
+    public static WorkPool pool() {
+	return(getgroup().workers);
+    }
+
     public static <T> Future<T> later(Callable<T> task) {
 	Defer d = getgroup();
 	return(d.defer(task));
@@ -321,9 +277,7 @@ public class Defer extends ThreadGroup {
     }
 
     public String stats() {
-	synchronized(queue) {
-	    return(String.format("%d %d/%d", queue.size(), busy.get(), pool.size()));
-	}
+	return(workers.stats());
     }
 
     public static String gstats() {
@@ -434,7 +434,7 @@ public class ExtInventory extends Widget {
     private static class ItemsGroup extends Widget {
 	private static final Map<String, Tex> cache = new WeakHashMap<>();
 	private static final Color progc = new Color(31, 209, 185, 128);
-	private static final BufferedImage def = WItem.missing.layer(Resource.imgc).img;
+	private static final BufferedImage def = WItem.missing.layer(Resource.imgc).img();
 	private static final Text.Foundry fnd = new Text.Foundry(Text.sans, 10).aa(true);
 	final ItemType type;
 	final List<WItem> items;
@@ -512,7 +512,7 @@ public class ExtInventory extends Widget {
 			    if(image == null) {
 				icon = GobIcon.SettingsWindow.ListIcon.tex(def);
 			    } else {
-				icon = GobIcon.SettingsWindow.ListIcon.tex(image.img);
+				icon = GobIcon.SettingsWindow.ListIcon.tex(image.img());
 			    }
 			}
 			cache.put(type.cacheId, icon);
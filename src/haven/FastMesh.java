@@ -319,6 +319,41 @@ public class FastMesh implements Rendered.Instancable, RenderTree.Node, Disposab
 	    }
 	    this.tmp = ind;
 	}
+
+	private MeshRes(Resource res, int id, int ref, int vbufid, int matid, Map<String, String> rdat, short[] ind) {
+	    res.super();
+	    this.id = id;
+	    this.ref = ref;
+	    this.vbufid = vbufid;
+	    this.matid = matid;
+	    this.rdat = rdat;
+	    this.tmp = ind;
+	}
+
+	/* Saves the index array after unstripping, which is the only
+	 * part of decoding a mesh that takes real work. */
+	public static final ResSnapshot.Codec<MeshRes> snapshot = new ResSnapshot.Codec<MeshRes>() {
+		public boolean save(MeshRes l, Message out) {
+		    out.addint16((short)l.id).addint16((short)l.ref).addint16((short)l.vbufid).addint16((short)l.matid);
+		    out.adduint16(l.rdat.size());
+		    for(Map.Entry<String, String> ent : l.rdat.entrySet())
+			out.addstring(ent.getKey()).addstring(ent.getValue());
+		    ByteBuffer buf = ByteBuffer.allocate(l.tmp.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+		    buf.asShortBuffer().put(l.tmp);
+		    out.addint32(l.tmp.length).addbytes(buf.array());
+		    return(true);
+		}
+
+		public MeshRes load(Resource res, Message in) {
+		    int id = in.int16(), ref = in.int16(), vbufid = in.int16(), matid = in.int16();
+		    Map<String, String> rdat = new HashMap<>();
+		    for(int i = 0, n = in.uint16(); i < n; i++)
+			rdat.put(in.string(), in.string());
+		    short[] ind = new short[in.int32()];
+		    ByteBuffer.wrap(in.bytes(ind.length * 2)).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(ind);
+		    return(new MeshRes(res, id, ref, vbufid, matid, Collections.unmodifiableMap(rdat), ind));
+		}
+	    };
 	
 	public void init() {
 	    VertexBuf v = getres().layer(VertexBuf.VertexRes.class, vbufid).b;
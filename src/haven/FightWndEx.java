@@ -116,7 +116,7 @@ public class FightWndEx extends Widget {
 	public <T> T context(Class<T> cl) {return(actxr.context(cl, FightWndEx.this));}
 	
 	public BufferedImage rendericon() {
-	    BufferedImage ret = res.get().layer(Resource.imgc).img;
+	    BufferedImage ret = res.get().layer(Resource.imgc).img();
 	    Graphics g = null;
 	    for(ItemInfo inf : info()) {
 		if(inf instanceof FightWnd.IconInfo) {
@@ -213,7 +213,7 @@ public class FightWndEx extends Widget {
 	    g.chcolor();
 	    try {
 		if(act.ri == null)
-		    act.ri = new TexI(PUtils.convolvedown(act.res.get().layer(Resource.imgc).img, new Coord(itemh, itemh), CharWnd.iconfilter));
+		    act.ri = new TexI(PUtils.convolvedown(act.res.get().layer(Resource.imgc).img(), new Coord(itemh, itemh), CharWnd.iconfilter));
 		g.image(act.ri, Coord.z);
 	    } catch (Loading l) {
 		g.image(WItem.missing.layer(Resource.imgc).tex(), Coord.z, new Coord(itemh, itemh));
@@ -28,16 +28,52 @@ package haven;
 
 import java.util.*;
 import java.util.function.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import haven.render.*;
 
 public abstract class GAttrib {
     public final Gob gob;
     public boolean skipRender = false;
+
+    /* Each direct subclass of GAttrib, which is what a Gob keys its
+     * attributes on, is given a small dense index the first time it
+     * is seen, so that Gobs can store their attributes in arrays. */
+    private static final AtomicInteger nslots = new AtomicInteger(0);
+    private static final ClassValue<Integer> slotids = new ClassValue<Integer>() {
+	    protected Integer computeValue(Class<?> cl) {
+		Class<? extends GAttrib> ac = attrclass(cl.asSubclass(GAttrib.class));
+		if(ac != cl)
+		    return(get(ac));
+		return(nslots.getAndIncrement());
+	    }
+	};
+
+    public static Class<? extends GAttrib> attrclass(Class<? extends GAttrib> cl) {
+	while(true) {
+	    Class<?> p = cl.getSuperclass();
+	    if(p == GAttrib.class)
+		return(cl);
+	    cl = p.asSubclass(GAttrib.class);
+	}
+    }
+
+    public static int slot(Class<? extends GAttrib> cl) {
+	return(slotids.get(cl));
+    }
+
+    public static int nslots() {
+	return(nslots.get());
+    }
     
     public GAttrib(Gob gob) {
 	this.gob = gob;
     }
     
+    /* Attributes whose gobs must be ticked with exact timing every
+     * frame, rather than at the reduced rates OCache uses for distant
+     * gobs, implement this. */
+    public static interface ExactTick {}
+
     public void tick() {
     }
     
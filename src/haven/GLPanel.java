@@ -246,7 +246,7 @@ public interface GLPanel extends UIPanel, UI.Context {
 			    p.setCursor(null);
 			} else {
 			    curshotspot = curs.flayer(Resource.negc).cc;
-			    p.setCursor(UIPanel.makeawtcurs(curs.flayer(Resource.imgc).img, curshotspot));
+			    p.setCursor(UIPanel.makeawtcurs(curs.flayer(Resource.imgc).img(), curshotspot));
 			}
 		    } catch(Exception e) {
 			cursmode = "tex";
@@ -290,6 +290,13 @@ public interface GLPanel extends UIPanel, UI.Context {
 		// FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Click: Map: %s, Obj: %s", map.clmaplist.stats(), map.clobjlist.stats());
 	    }
 	    FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Async: L %s, D %s", ui.loader.stats(), Defer.gstats());
+	    FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Loading: %s", Loading.stats());
+	    if(ui.sess != null) {
+		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Net: %s", ui.sess.conn.stats());
+		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Objs: %s", ui.sess.glob.oc.stats());
+		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Tick: %s", ui.sess.glob.oc.tickstats());
+		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "UI: %s", ui.sess.uistats());
+	    }
 	    int rqd = Resource.local().qdepth() + Resource.remote().qdepth();
 	    if(rqd > 0)
 		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "RQ depth: %d (%d)", rqd, Resource.local().numloaded() + Resource.remote().numloaded());
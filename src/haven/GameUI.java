@@ -86,7 +86,7 @@ public class GameUI extends ConsoleHost implements Console.Directory, UI.Message
     private final Collection<DraggedItem> handSave = new LinkedList<DraggedItem>();
     private boolean handHidden = false;
     public WItem vhand;
-    public final Object heldNotifier = new Object();
+    public final Signal heldNotifier = new Signal();
     public ChatUI chat;
     public ChatUI.Channel syslog;
     public Progress prog = null;
@@ -1033,7 +1033,10 @@ public class GameUI extends ConsoleHost implements Console.Directory, UI.Message
 		ui.destroy(mapfile);
 		mapfile = null;
 	    }
-	    ResCache mapstore = ResCache.global;
+	    /* The map file rewrites its entries constantly, which suits
+	     * the per-file cache better than the append-only pack that
+	     * ResCache.global uses. */
+	    ResCache mapstore = HashDirCache.create();
 	    if(MapFile.mapbase.get() != null)
 		mapstore = HashDirCache.get(MapFile.mapbase.get());
 	    if(mapstore != null) {
@@ -1097,7 +1100,7 @@ public class GameUI extends ConsoleHost implements Console.Directory, UI.Message
 	    	hand.add(new DraggedItem(g, lc));
 	    }
 	    updhand();
-	    synchronized (heldNotifier) { heldNotifier.notifyAll(); }
+	    heldNotifier.fire();
 	} else if(place == "chr") {
 	    studywnd = add(new StudyWnd());
 	    studywnd.hide();
@@ -1265,7 +1268,7 @@ public class GameUI extends ConsoleHost implements Console.Directory, UI.Message
 		if(di.item == w) {
 		    i.remove();
 		    updhand();
-		    synchronized (heldNotifier) { heldNotifier.notifyAll(); }
+		    heldNotifier.fire();
 		}
 	    }
 	} else if(polities.contains(w)) {
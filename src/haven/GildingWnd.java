@@ -117,7 +117,7 @@ public class GildingWnd extends WindowX {
 		    .map(res -> {
 			BufferedImage val = charWnd.findattr(res).compline().img;
 			Coord tsz = new Coord(val.getHeight(), val.getHeight());
-			return ItemInfo.catimgsh(1, convolve(res.layer(Resource.imgc).img, tsz, iconfilter), val);
+			return ItemInfo.catimgsh(1, convolve(res.layer(Resource.imgc).img(), tsz, iconfilter), val);
 		    })
 		    .toArray(BufferedImage[]::new)
 		));
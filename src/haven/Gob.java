@@ -50,7 +50,13 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
     public boolean removed = false;
     public final Glob glob;
     private boolean disposed = false;
-    final Map<Class<? extends GAttrib>, GAttrib> attr = new HashMap<Class<? extends GAttrib>, GAttrib>();
+    /* Attributes are kept in copy-on-write arrays, one indexed by
+     * GAttrib.slot and one listing them all, so that lookups and
+     * iteration need neither locking nor copying. Modifications are
+     * serialized on attrlock. */
+    private static final GAttrib[] noattrs = {};
+    private volatile GAttrib[] aslots = noattrs, alist = noattrs;
+    private final Object attrlock = new Object();
     public final Collection<Overlay> ols = new ArrayList<Overlay>();
     public final Collection<RenderTree.Slot> slots = new ArrayList<>(1);
     public int updateseq = 0;
@@ -58,6 +64,15 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
     private final LinkedList<Runnable> deferred = new LinkedList<>();
     private Loader.Future<?> deferral = null;
     private final Object removalLock = new Object();
+    /* Private to OCache's tick scheduling */
+    double lodacc;
+    int lodwait, liveidx = -1, rflags;
+    /* Private to GobTagIndex */
+    boolean indexed;
+    String iname;
+    Set<GobTag> itags = Collections.emptySet();
+    boolean iicon;
+    public static final int RF_HITBOX = 1, RF_VISIBILITY = 2, RF_INFO = 4, RF_COLOR = 8, RF_MARKER = 16;
     private GobDamageInfo damage;
     private HidingGobSprite<Hitbox> hitbox = null;
     public Drawable drawable;
@@ -524,15 +539,45 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	this(glob, c, -1);
     }
     
-    private Map<Class<? extends GAttrib>, GAttrib> cloneattrs() {
-	synchronized (this.attr) {
-	    return new HashMap<>(this.attr);
+    public Collection<GAttrib> attrs() {
+	return(Collections.unmodifiableList(Arrays.asList(alist)));
+    }
+
+    private GAttrib aget(int slot) {
+	GAttrib[] s = aslots;
+	return((slot < s.length) ? s[slot] : null);
+    }
+
+    /* Must be called with attrlock held. */
+    private void aset(int slot, GAttrib a) {
+	GAttrib[] s = aslots;
+	GAttrib prev = (slot < s.length) ? s[slot] : null;
+	if(prev == a)
+	    return;
+	s = Arrays.copyOf(s, Math.max(s.length, Math.max(slot + 1, GAttrib.nslots())));
+	s[slot] = a;
+	GAttrib[] l = alist;
+	if(prev != null) {
+	    for(int i = 0; i < l.length; i++) {
+		if(l[i] == prev) {
+		    GAttrib[] n = new GAttrib[l.length - 1];
+		    System.arraycopy(l, 0, n, 0, i);
+		    System.arraycopy(l, i + 1, n, i, l.length - i - 1);
+		    l = n;
+		    break;
+		}
+	    }
 	}
+	if(a != null) {
+	    l = Arrays.copyOf(l, l.length + 1);
+	    l[l.length - 1] = a;
+	}
+	aslots = s;
+	alist = l;
     }
-    
+
     public void ctick(double dt) {
-	Map<Class<? extends GAttrib>, GAttrib> attr = cloneattrs();
-	for(GAttrib a : attr.values())
+	for(GAttrib a : alist)
 	    a.ctick(dt);
 	for(Iterator<Overlay> i = ols.iterator(); i.hasNext();) {
 	    Overlay ol = i.next();
@@ -571,6 +616,14 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	updateState();
     }
 
+    public boolean exacttick() {
+	for(GAttrib a : alist) {
+	    if(a instanceof GAttrib.ExactTick)
+		return(true);
+	}
+	return(false);
+    }
+
     public void gtick(Render g) {
 	Drawable d = getattr(Drawable.class);
 	if(d != null)
@@ -731,8 +784,7 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
     }
     
     public void tick() {
-	Map<Class<? extends GAttrib>, GAttrib> attr = cloneattrs();
-	for (GAttrib a : attr.values())
+	for (GAttrib a : alist)
 	    a.tick();
     }
     
@@ -756,8 +808,7 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	    disposed = true;
 	    removalLock.notifyAll();
 	}
-	Map<Class<? extends GAttrib>, GAttrib> attr = cloneattrs();
-	for(GAttrib a : attr.values()) {
+	for(GAttrib a : alist) {
 	    if(a instanceof Moving) {updateMovingInfo(null, a);}
 	    a.dispose();
 	}
@@ -773,6 +824,7 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	}
 	this.rc = c;
 	this.a = a;
+	glob.oc.index.moved(this);
     }
     
     public Boolean isMe() {
@@ -802,7 +854,9 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	GameUI gui = context(GameUI.class);
 	if(icon == null || gui == null || gui.iconconf == null) {return null;}
 	try {
-	    GobIcon.Setting s = gui.iconconf.get(icon.icon());
+	    GobIcon.Icon img = icon.tryicon();
+	    if(img == null) {return null;}
+	    GobIcon.Setting s = gui.iconconf.get(img);
 	    return s == null ? null : s.show;
 	} catch (Loading ignored) {}
 	return null;
@@ -847,28 +901,22 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	return(tile.drawstate(glob, pc));
     }
 
-    private Class<? extends GAttrib> attrclass(Class<? extends GAttrib> cl) {
-	while(true) {
-	    Class<?> p = cl.getSuperclass();
-	    if(p == GAttrib.class)
-		return(cl);
-	    cl = p.asSubclass(GAttrib.class);
-	}
+    private static Class<? extends GAttrib> attrclass(Class<? extends GAttrib> cl) {
+	return(GAttrib.attrclass(cl));
     }
 
     public <C extends GAttrib> C getattr(Class<C> c) {
-	synchronized (attr) {
-	    GAttrib attr = this.attr.get(attrclass(c));
-	    if(!c.isInstance(attr))
-		return (null);
-	    return (c.cast(attr));
-	}
+	GAttrib attr = aget(GAttrib.slot(c));
+	if(!c.isInstance(attr))
+	    return (null);
+	return (c.cast(attr));
     }
 
     private void setattr(Class<? extends GAttrib> ac, GAttrib a) {
 	GAttrib prev;
-	synchronized (attr) {
-	    prev = attr.remove(ac);
+	int slot = GAttrib.slot(ac);
+	synchronized (attrlock) {
+	    prev = aget(slot);
 	    if(prev != null) {
 		if((prev instanceof RenderTree.Node) && (prev.slots != null))
 		    RUtils.multirem(new ArrayList<>(prev.slots));
@@ -880,10 +928,10 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 		    try {
 			RUtils.multiadd(this.slots, (RenderTree.Node) a);
 		    } catch (Loading l) {
-			if(prev instanceof RenderTree.Node && !prev.skipRender) {
+			if(prev instanceof RenderTree.Node && !prev.skipRender)
 			    RUtils.multiadd(this.slots, (RenderTree.Node) prev);
-			    attr.put(ac, prev);
-			}
+			else
+			    aset(slot, null);
 			if(prev instanceof SetupMod)
 			    setupmods.add((SetupMod) prev);
 			throw (l);
@@ -891,8 +939,8 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 		}
 		if(a instanceof SetupMod)
 		    setupmods.add((SetupMod) a);
-		attr.put(ac, a);
 	    }
+	    aset(slot, a);
 	    if(prev != null)
 		prev.dispose();
 	    if(ac == Drawable.class) {
@@ -904,6 +952,8 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 		kinUpdated();
 	    } else if(ac == GobHealth.class) {
 		status.update(StatusType.info);
+	    } else if((ac == GobIcon.class) && (glob != null)) {
+		glob.oc.tagindex.icon(this, a != null);
 	    }
 	}
 	if(ac == Moving.class) {updateMovingInfo(a, prev);}
@@ -918,7 +968,7 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
     }
 
     public Supplier<? extends Pipe.Op> eqpoint(String nm, Message dat) {
-	for(GAttrib attr : this.attr.values()) {
+	for(GAttrib attr : alist) {
 	    if(attr instanceof EquipTarget) {
 		Supplier<? extends Pipe.Op> ret = ((EquipTarget)attr).eqpoint(nm, dat);
 		if(ret != null)
@@ -1040,8 +1090,7 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	    if(ol.slots != null)
 		slot.add(ol);
 	}
-	Map<Class<? extends GAttrib>, GAttrib> attr = cloneattrs();
-	for(GAttrib a : attr.values()) {
+	for(GAttrib a : alist) {
 	    if(a instanceof RenderTree.Node && !a.skipRender)
 		slot.add((RenderTree.Node) a);
 	}
@@ -1392,15 +1441,22 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	synchronized (this.tags) {
 	    this.tags.clear();
 	    this.tags.addAll(tags);
+	    glob.oc.tagindex.update(this, resid(), this.tags);
 	}
     }
     
     public void tag(GobTag tag) {
-	synchronized (this.tags) { this.tags.add(tag); }
+	synchronized (this.tags) {
+	    this.tags.add(tag);
+	    glob.oc.tagindex.update(this, resid(), this.tags);
+	}
     }
     
     public void untag(GobTag tag) {
-	synchronized (this.tags) { this.tags.remove(tag); }
+	synchronized (this.tags) {
+	    this.tags.remove(tag);
+	    glob.oc.tagindex.update(this, resid(), this.tags);
+	}
     }
     
     private void updateWarnings() {
@@ -1462,7 +1518,10 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
         status.update(StatusType.info);
     }
     
-    public void poseUpdated() {status.update(StatusType.pose);}
+    public void poseUpdated() {
+	status.update(StatusType.pose);
+	glob.oc.changed.fire();
+    }
     
     public void idUpdated() {status.update(StatusType.id);}
     
@@ -1487,6 +1546,14 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
     
     public void markerUpdated() {status.update(StatusType.marker);}
     
+    void refresh(int fl) {
+	if((fl & RF_HITBOX) != 0) {hitboxUpdated();}
+	if((fl & RF_VISIBILITY) != 0) {visibilityUpdated();}
+	if((fl & RF_INFO) != 0) {infoUpdated();}
+	if((fl & RF_COLOR) != 0) {colorUpdated();}
+	if((fl & RF_MARKER) != 0) {markerUpdated();}
+    }
+    
     private static void updateStatus(UI ui, long gobId, StatusType type) {
 	Gob gob = ui.sess.glob.oc.getgob(gobId);
 	if(gob == null) {return;}
@@ -1651,9 +1718,7 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
     }
     
     public KinInfo kin() {
-	synchronized (attr) {
-	    return KinInfo.from(this, attr);
-	}
+	return KinInfo.from(this, attrs());
     }
     
     public float scale() {return info.growthScale();}
@@ -110,7 +110,7 @@ public class GobIcon extends GAttrib {
 	    BufferedImage img = rimg.scaled();
 	    Tex tex = rimg.tex();
 	    if ((tex.sz().x > size) || (tex.sz().y > size)) {
-		BufferedImage buf = rimg.img;
+		BufferedImage buf = rimg.img();
 		buf = PUtils.rasterimg(PUtils.blurmask2(buf.getRaster(), 1, 1, Color.BLACK));
 		Coord tsz;
 		if(buf.getWidth() > buf.getHeight())
@@ -161,7 +161,7 @@ public class GobIcon extends GAttrib {
 	}
 
 	public BufferedImage image() {
-	    return(res.flayer(Resource.imgc).img);
+	    return(res.flayer(Resource.imgc).img());
 	}
 
 	public void draw(GOut g, Coord cc) {
@@ -228,6 +228,14 @@ public class GobIcon extends GAttrib {
 	return(this.icon);
     }
 
+    /* Returns null rather than throwing while the icon resource is
+     * still loading. */
+    public Icon tryicon() {
+	if((this.icon == null) && (this.res.tryGet() == null))
+	    return(null);
+	return(icon());
+    }
+
     private static Consumer<UI> resnotif(String nm) {
 	return(ui -> {
 		Indir<Resource> resid = Resource.local().load(nm);
@@ -746,7 +754,7 @@ public class GobIcon extends GAttrib {
 	    private Tex img = null;
 	    public Tex img() {
 		if(this.img == null) {
-		    this.img = tex(conf.res.get().layer(Resource.imgc).img);
+		    this.img = tex(conf.res.get().layer(Resource.imgc).img());
 		}
 		return(this.img);
 	    }
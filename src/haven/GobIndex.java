@@ -0,0 +1,257 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/* A uniform grid over the positions of the objects in an OCache.
+ * Updates are serialized on the index itself, while queries read
+ * copy-on-write cell arrays and need no lock at all, so that they
+ * can be run from any thread. Queries test the current position of
+ * each candidate, so an object moving concurrently with a query may
+ * or may not be reported by it, but never one outside its bounds. */
+public class GobIndex {
+    /* About nine tiles; most queries cover at most a few cells. */
+    public static final double CELL = 100.0;
+    private static final Gob[] nil = {};
+    private final Map<Long, Gob[]> cells = new ConcurrentHashMap<>();
+    private final Map<Gob, Long> where = new IdentityHashMap<>();
+    private volatile int minx = Integer.MAX_VALUE, miny = Integer.MAX_VALUE;
+    private volatile int maxx = Integer.MIN_VALUE, maxy = Integer.MIN_VALUE;
+
+    private static int cell(double c) {
+	return((int)Math.floor(c / CELL));
+    }
+
+    private static long key(int x, int y) {
+	return((((long)x) << 32) | (y & 0xffffffffL));
+    }
+
+    private static Coord2d pos(Gob gob) {
+	Coord2d rc = gob.rc;
+	return((rc == null) ? Coord2d.z : rc);
+    }
+
+    private Gob[] cell(int x, int y) {
+	Gob[] ret = cells.get(key(x, y));
+	return((ret == null) ? nil : ret);
+    }
+
+    private void cadd(long k, Gob gob) {
+	Gob[] cur = cells.get(k);
+	if(cur == null) {
+	    cells.put(k, new Gob[] {gob});
+	} else {
+	    Gob[] nw = Arrays.copyOf(cur, cur.length + 1);
+	    nw[cur.length] = gob;
+	    cells.put(k, nw);
+	}
+    }
+
+    private void crem(long k, Gob gob) {
+	Gob[] cur = cells.get(k);
+	if(cur == null)
+	    return;
+	for(int i = 0; i < cur.length; i++) {
+	    if(cur[i] == gob) {
+		if(cur.length == 1) {
+		    cells.remove(k);
+		} else {
+		    Gob[] nw = new Gob[cur.length - 1];
+		    System.arraycopy(cur, 0, nw, 0, i);
+		    System.arraycopy(cur, i + 1, nw, i, cur.length - i - 1);
+		    cells.put(k, nw);
+		}
+		return;
+	    }
+	}
+    }
+
+    private long place(Gob gob) {
+	Coord2d rc = pos(gob);
+	int x = cell(rc.x), y = cell(rc.y);
+	if(x < minx) minx = x;
+	if(y < miny) miny = y;
+	if(x > maxx) maxx = x;
+	if(y > maxy) maxy = y;
+	return(key(x, y));
+    }
+
+    public synchronized void add(Gob gob) {
+	if(where.containsKey(gob))
+	    return;
+	long k = place(gob);
+	where.put(gob, k);
+	cadd(k, gob);
+    }
+
+    public synchronized void remove(Gob gob) {
+	Long k = where.remove(gob);
+	if(k != null)
+	    crem(k, gob);
+    }
+
+    public synchronized void moved(Gob gob) {
+	Long o = where.get(gob);
+	if(o == null)
+	    return;
+	long k = place(gob);
+	if(k != o) {
+	    crem(o, gob);
+	    cadd(k, gob);
+	    where.put(gob, k);
+	}
+    }
+
+    public synchronized int size() {
+	return(where.size());
+    }
+
+    public void rect(Coord2d ul, Coord2d br, Consumer<? super Gob> cb) {
+	int x0 = Math.max(cell(ul.x), minx), y0 = Math.max(cell(ul.y), miny);
+	int x1 = Math.min(cell(br.x), maxx), y1 = Math.min(cell(br.y), maxy);
+	for(int y = y0; y <= y1; y++) {
+	    for(int x = x0; x <= x1; x++) {
+		for(Gob gob : cell(x, y)) {
+		    Coord2d rc = pos(gob);
+		    if((rc.x >= ul.x) && (rc.y >= ul.y) && (rc.x <= br.x) && (rc.y <= br.y))
+			cb.accept(gob);
+		}
+	    }
+	}
+    }
+
+    public List<Gob> rect(Coord2d ul, Coord2d br) {
+	List<Gob> ret = new ArrayList<>();
+	rect(ul, br, ret::add);
+	return(ret);
+    }
+
+    public void radius(Coord2d c, double r, Consumer<? super Gob> cb) {
+	double r2 = r * r;
+	rect(c.sub(r, r), c.add(r, r), gob -> {
+		Coord2d rc = pos(gob);
+		double dx = rc.x - c.x, dy = rc.y - c.y;
+		if((dx * dx) + (dy * dy) <= r2)
+		    cb.accept(gob);
+	    });
+    }
+
+    public List<Gob> radius(Coord2d c, double r) {
+	List<Gob> ret = new ArrayList<>();
+	radius(c, r, ret::add);
+	return(ret);
+    }
+
+    /* Visits the cells in square rings of increasing Chebyshev
+     * distance around c. Every cell in ring d lies at least (d - 1) *
+     * CELL from c, which bounds how far the search must go. */
+    private void rings(Coord2d c, double maxr, ToDoubleFunction<Integer> ring) {
+	int cx = cell(c.x), cy = cell(c.y);
+	for(int d = 0; ; d++) {
+	    if((d - 1) * CELL > maxr)
+		break;
+	    if((cx - d < minx) && (cx + d > maxx) && (cy - d < miny) && (cy + d > maxy))
+		break;
+	    if(ring.applyAsDouble(d) <= d * CELL)
+		break;
+	}
+    }
+
+    private void ring(int cx, int cy, int d, Consumer<Gob> cb) {
+	if(d == 0) {
+	    for(Gob gob : cell(cx, cy))
+		cb.accept(gob);
+	    return;
+	}
+	for(int x = cx - d; x <= cx + d; x++) {
+	    for(Gob gob : cell(x, cy - d)) cb.accept(gob);
+	    for(Gob gob : cell(x, cy + d)) cb.accept(gob);
+	}
+	for(int y = cy - d + 1; y <= cy + d - 1; y++) {
+	    for(Gob gob : cell(cx - d, y)) cb.accept(gob);
+	    for(Gob gob : cell(cx + d, y)) cb.accept(gob);
+	}
+    }
+
+    /* Returns the closest object to c within maxr matching sel, or
+     * null if there is none. */
+    public Gob nearest(Coord2d c, double maxr, Predicate<? super Gob> sel) {
+	int cx = cell(c.x), cy = cell(c.y);
+	Gob[] best = {null};
+	double[] bd = {maxr};
+	rings(c, maxr, d -> {
+		ring(cx, cy, d, gob -> {
+			double gd = pos(gob).dist(c);
+			if((gd <= bd[0]) && ((best[0] == null) || (gd < bd[0])) && ((sel == null) || sel.test(gob))) {
+			    best[0] = gob;
+			    bd[0] = gd;
+			}
+		    });
+		return((best[0] == null) ? Double.POSITIVE_INFINITY : bd[0]);
+	    });
+	return(best[0]);
+    }
+
+    public Gob nearest(Coord2d c, double maxr) {
+	return(nearest(c, maxr, null));
+    }
+
+    /* Returns up to k objects within maxr of c matching sel, closest
+     * first. */
+    public List<Gob> nearest(Coord2d c, int k, double maxr, Predicate<? super Gob> sel) {
+	if(k <= 0)
+	    return(Collections.emptyList());
+	int cx = cell(c.x), cy = cell(c.y);
+	PriorityQueue<Pair<Double, Gob>> found = new PriorityQueue<>((a, b) -> Double.compare(b.a, a.a));
+	rings(c, maxr, d -> {
+		ring(cx, cy, d, gob -> {
+			double gd = pos(gob).dist(c);
+			if(gd > maxr)
+			    return;
+			if((found.size() >= k) && (gd >= found.peek().a))
+			    return;
+			if((sel != null) && !sel.test(gob))
+			    return;
+			found.add(new Pair<>(gd, gob));
+			if(found.size() > k)
+			    found.poll();
+		    });
+		return((found.size() < k) ? Double.POSITIVE_INFINITY : found.peek().a);
+	    });
+	Gob[] ret = new Gob[found.size()];
+	for(int i = ret.length - 1; i >= 0; i--)
+	    ret[i] = found.poll().b;
+	return(Arrays.asList(ret));
+    }
+
+    public List<Gob> nearest(Coord2d c, int k, double maxr) {
+	return(nearest(c, k, maxr, null));
+    }
+}
@@ -174,8 +174,188 @@ public enum GobTag {
     private static final boolean DBG = false;
     private static final Set<String> UNKNOWN = new HashSet<>();
     
+    /* Substring groups tested against resource names, compiled into
+     * one Aho-Corasick automaton so that a name is scanned once
+     * for all of them. */
+    private static final int P_AGGRO = 0, P_BIG_PARTS = 1, P_ANIMALS = 2, P_LIKE_HERB = 3, P_LIKE_CRITTER = 4,
+	P_CRITTERS = 5, P_CAN_AGGRO = 6, P_VEHICLES = 7, P_RABBIT = 8, P_BAT = 9, P_STUMP = 10,
+	P_CATTLE = 11, P_GOAT = 12, P_HORSE = 13, P_PIG = 14, P_SHEEP = 15;
+    private static final Patterns patterns = new Patterns()
+	.add(P_AGGRO, AGGRO).add(P_BIG_PARTS, BIG_PARTS).add(P_ANIMALS, ANIMALS)
+	.add(P_LIKE_HERB, LIKE_HERB).add(P_LIKE_CRITTER, LIKE_CRITTER).add(P_CRITTERS, CRITTERS)
+	.add(P_CAN_AGGRO, CAN_AGGRO).add(P_VEHICLES, VEHICLES)
+	.add(P_RABBIT, "/rabbit").add(P_BAT, "/bat").add(P_STUMP, "stump")
+	.add(P_CATTLE, "/cattle/").add(P_GOAT, "/goat/").add(P_HORSE, "/horse/").add(P_PIG, "/pig/").add(P_SHEEP, "/sheep/")
+	.compile();
+    
+    private static class Patterns {
+	private final List<Map<Character, Integer>> next = new ArrayList<>();
+	private final List<Integer> found = new ArrayList<>();
+	private int[] fail, out;
+	
+	Patterns() {
+	    node();
+	}
+	
+	private int node() {
+	    next.add(new HashMap<>());
+	    found.add(0);
+	    return next.size() - 1;
+	}
+	
+	Patterns add(int group, String... pats) {
+	    for (String pat : pats) {
+		int n = 0;
+		for (int i = 0; i < pat.length(); i++) {
+		    Integer c = next.get(n).get(pat.charAt(i));
+		    if(c == null) {
+			c = node();
+			next.get(n).put(pat.charAt(i), c);
+		    }
+		    n = c;
+		}
+		found.set(n, found.get(n) | (1 << group));
+	    }
+	    return this;
+	}
+	
+	Patterns compile() {
+	    fail = new int[next.size()];
+	    out = new int[next.size()];
+	    Queue<Integer> queue = new ArrayDeque<>();
+	    queue.add(0);
+	    while (!queue.isEmpty()) {
+		int n = queue.remove();
+		out[n] = found.get(n) | out[fail[n]];
+		for (Map.Entry<Character, Integer> e : next.get(n).entrySet()) {
+		    int c = e.getValue();
+		    fail[c] = (n == 0) ? 0 : step(fail[n], e.getKey());
+		    queue.add(c);
+		}
+	    }
+	    return this;
+	}
+	
+	private int step(int n, char ch) {
+	    while (true) {
+		Integer c = next.get(n).get(ch);
+		if(c != null) {return c;}
+		if(n == 0) {return 0;}
+		n = fail[n];
+	    }
+	}
+	
+	int match(String s) {
+	    int ret = 0, n = 0;
+	    for (int i = 0; i < s.length(); i++) {
+		n = step(n, s.charAt(i));
+		ret |= out[n];
+	    }
+	    return ret;
+	}
+    }
+    
+    private static boolean has(int m, int group) {return (m & (1 << group)) != 0;}
+    
+    /* The tags a resource name implies by itself, plus which of the
+     * gob-dependent rules apply to it, worked out once per name. */
+    private static class NameInfo {
+	final Set<GobTag> tags = EnumSet.noneOf(GobTag.class);
+	int rules = 0;
+	ContainerInfo.Container container;
+    }
+    private static final int R_PLAYER = 1, R_BAT = 2, R_DFRAME = 4, R_TTUB = 8, R_BEEHIVE = 16, R_CAN_AGGRO = 32, R_UNKNOWN = 64;
+    private static final Map<String, NameInfo> names = new java.util.concurrent.ConcurrentHashMap<>();
+    
+    private static NameInfo classify(String name) {
+	NameInfo info = new NameInfo();
+	Set<GobTag> tags = info.tags;
+	int m = patterns.match(name);
+	if(name.startsWith("gfx/terobjs/trees")) {
+	    if(name.endsWith("log") || name.endsWith("oldtrunk")) {
+		tags.add(LOG);
+	    } else if(has(m, P_STUMP)) {
+		tags.add(STUMP);
+	    } else {
+		tags.add(TREE);
+	    }
+	} else if(name.startsWith("gfx/terobjs/bushes")) {
+	    tags.add(BUSH);
+	} else if(name.startsWith("gfx/terobjs/herbs/") || has(m, P_LIKE_HERB)) {
+	    tags.add(HERB);
+	} else if(name.startsWith("gfx/borka/body")) {
+	    tags.add(PLAYER);
+	    info.rules |= R_PLAYER;
+	} else if(name.startsWith("gfx/kritter/") || has(m, P_LIKE_CRITTER)) {
+	    if(has(m, P_RABBIT)) {
+		tags.add(RABBIT);
+	    }
+	    if(name.endsWith("/midgeswarm")) {
+		tags.add(MIDGES);
+	    } else if(has(m, P_CRITTERS)) {
+		tags.add(ANIMAL);
+		tags.add(CRITTER);
+	    } else if(has(m, P_BIG_PARTS)) {
+		//ignore big parts of animals like Orca
+	    } else if(has(m, P_AGGRO)) {
+		tags.add(ANIMAL);
+		tags.add(AGGRESSIVE);
+	    } else if(has(m, P_ANIMALS)) {
+		tags.add(ANIMAL);
+	    } else if(domesticated(name, m, tags)) {
+		tags.add(ANIMAL);
+		tags.add(DOMESTIC);
+	    } else {
+		info.rules |= R_UNKNOWN;
+	    }
+	    if(has(m, P_BAT)) {
+		info.rules |= R_BAT;
+	    }
+	} else if(name.startsWith("gfx/terobjs/arch/") && name.endsWith("gate")) {
+	    tags.add(GATE);
+	} else if(name.endsWith("/dframe")) {
+	    tags.add(CONTAINER);
+	    tags.add(PROGRESSING);
+	    info.rules |= R_DFRAME;
+	} else if(name.endsWith("/ttub")) {
+	    tags.add(CONTAINER);
+	    tags.add(PROGRESSING);
+	    info.rules |= R_TTUB;
+	} else if(name.endsWith("/beehive")) {
+	    tags.add(PROGRESSING);
+	    info.rules |= R_BEEHIVE;
+	} else if(name.endsWith("/gems/gemstone")) {
+	    tags.add(GEM);
+	} else if(name.endsWith("/wheelbarrow") || name.endsWith("/plow")) {
+	    tags.add(PUSHED);
+	}
+	if(has(m, P_VEHICLES)) {
+	    tags.add(VEHICLE);
+	}
+	if(name.equals("gfx/terobjs/items/arrow")) {
+	    tags.add(ARROW);
+	}
+	if(name.equals("gfx/terobjs/boostspeed")) {
+	    tags.add(SPEED);
+	}
+	if(anyOf(tags, HERB, CRITTER, GEM, ARROW)) {
+	    tags.add(PICKUP);
+	}
+	if(anyOf(tags, DOMESTIC, HERB, TREE, BUSH)) {
+	    tags.add(MENU);
+	}
+	if(has(m, P_CAN_AGGRO)) {
+	    info.rules |= R_CAN_AGGRO;
+	}
+	info.container = ContainerInfo.get(name).orElse(null);
+	if(info.container != null) {
+	    tags.add(CONTAINER);
+	}
+	return info;
+    }
+    
     public static Set<GobTag> tags(Gob gob) {
-        Set<GobTag> tags = new HashSet<>();
+        Set<GobTag> tags = EnumSet.noneOf(GobTag.class);
         GameUI gui = gob.context(GameUI.class);
         Glob glob = gob.context(Glob.class);
         Equipory equipory = gui != null ? gui.equipory : null;
@@ -184,35 +364,11 @@ public enum GobTag {
         String name = gob.resid();
         int sdt = gob.sdt();
         if(name != null) {
-            List<String> ols = Collections.emptyList();
-            synchronized (gob.ols) {
-                try {
-                    List<String> list = new ArrayList<>();
-                    for (Gob.Overlay overlay : gob.ols) {
-                        if(overlay != null && overlay.spr != null && overlay.spr.res != null) {
-                            list.add(overlay.spr.res.name);
-                        }
-                    }
-                    ols = list;
-                } catch (Loading e) {
-                    gob.tagsUpdated();
-                }
-            }
-    
-            if(name.startsWith("gfx/terobjs/trees")) {
-                if(name.endsWith("log") || name.endsWith("oldtrunk")) {
-                    tags.add(LOG);
-                } else if(name.contains("stump")) {
-                    tags.add(STUMP);
-                } else {
-                    tags.add(TREE);
-                }
-            } else if(name.startsWith("gfx/terobjs/bushes")) {
-                tags.add(BUSH);
-            } else if(name.startsWith("gfx/terobjs/herbs/") || ofType(name, LIKE_HERB)) {
-                tags.add(HERB);
-            } else if(name.startsWith("gfx/borka/body")) {
-                tags.add(PLAYER);
+	    NameInfo info = names.computeIfAbsent(name, GobTag::classify);
+	    tags.addAll(info.tags);
+	    int rules = info.rules;
+	    
+	    if((rules & R_PLAYER) != 0) {
                 Boolean me = gob.isMe();
                 if(me != null) {
                     if(me) {
@@ -221,85 +377,53 @@ public enum GobTag {
 			tags.add(KinInfo.isFoe(gob) ? FOE : FRIEND);
                     }
                 }
-            } else if(name.startsWith("gfx/kritter/") || ofType(name, LIKE_CRITTER)) {
-                if(name.contains("/rabbit")) {
-                    tags.add(RABBIT);
-                }
-                if(name.endsWith("/midgeswarm")) {
-                    tags.add(MIDGES);
-                } else if(ofType(name, CRITTERS)) {
-                    tags.add(ANIMAL);
-                    tags.add(CRITTER);
-                } else if(ofType(name, BIG_PARTS)) {
-                    //ignore big parts of animals like Orca
-                } else if(ofType(name, AGGRO)) {
-                    tags.add(ANIMAL);
-                    tags.add(AGGRESSIVE);
-                } else if(ofType(name, ANIMALS)) {
-                    tags.add(ANIMAL);
-                } else if(domesticated(gob, name, tags)) {
-                    tags.add(ANIMAL);
-                    tags.add(DOMESTIC);
-                } else if(DBG && !UNKNOWN.contains(name)) {
-                    UNKNOWN.add(name);
-                    gob.glob.sess.ui.message(name, GameUI.MsgType.ERROR);
-                    System.out.println(name);
-                }
-                if(name.contains("/bat")) {
-                    if(equipory == null || !equipory.has("/batcape")) {
-                        tags.add(AGGRESSIVE);
-                    }
-                }
-            } else if(name.startsWith("gfx/terobjs/arch/") && name.endsWith("gate")) {
-                tags.add(GATE);
-            } else if(name.endsWith("/dframe")) {
-                tags.add(CONTAINER);
-                tags.add(PROGRESSING);
-                boolean empty = ols.isEmpty();
-                boolean done = !empty && ols.stream().noneMatch(GobTag::isDrying);
-                if(empty) { tags.add(EMPTY); }
-                if(done) { tags.add(READY); }
-            } else if(name.endsWith("/ttub")) {
-                tags.add(CONTAINER);
-                tags.add(PROGRESSING);
+	    }
+	    if(DBG && ((rules & R_UNKNOWN) != 0) && !UNKNOWN.contains(name)) {
+		UNKNOWN.add(name);
+		gob.glob.sess.ui.message(name, GameUI.MsgType.ERROR);
+		System.out.println(name);
+	    }
+	    if((rules & R_BAT) != 0) {
+		if(equipory == null || !equipory.has("/batcape")) {
+		    tags.add(AGGRESSIVE);
+		}
+	    }
+	    if((rules & R_DFRAME) != 0) {
+		List<String> ols = Collections.emptyList();
+		synchronized (gob.ols) {
+		    try {
+			List<String> list = new ArrayList<>();
+			for (Gob.Overlay overlay : gob.ols) {
+			    if(overlay != null && overlay.spr != null && overlay.spr.res != null) {
+				list.add(overlay.spr.res.name);
+			    }
+			}
+			ols = list;
+		    } catch (Loading e) {
+			gob.tagsUpdated();
+		    }
+		}
+		boolean empty = ols.isEmpty();
+		boolean done = !empty && ols.stream().noneMatch(GobTag::isDrying);
+		if(empty) { tags.add(EMPTY); }
+		if(done) { tags.add(READY); }
+	    } else if((rules & R_TTUB) != 0) {
                 //sdt bits: 0 - water, 1 - tannin, 2 - hide, 3 - leather
                 boolean empty = sdt < 4; //has no hide nor leather
                 boolean done = sdt >= 8; //has leather
                 if(empty) { tags.add(EMPTY); }
                 if(done) { tags.add(READY); }
-            } else if(name.endsWith("/beehive")) {
-                tags.add(PROGRESSING);
+	    } else if((rules & R_BEEHIVE) != 0) {
                 //sdt bits: 0 - honey, 1 - bees?, 2 - wax
                 //boolean noHoney = (sdt & 1) == 0; //has no honey
                 boolean hasWax = (sdt & 4) != 0; //has wax
                 if(hasWax) {tags.add(READY);}
-            } else if(name.endsWith("/gems/gemstone")) {
-                tags.add(GEM);
-            } else if(name.endsWith("/wheelbarrow") || name.endsWith("/plow")) {
-                tags.add(PUSHED);
-            }
-            if(ofType(name, VEHICLES)) {
-                tags.add(VEHICLE);
-            }
-            if(name.equals("gfx/terobjs/items/arrow")) {
-                tags.add(ARROW);
-            }
-            if(name.equals("gfx/terobjs/boostspeed")) {
-                tags.add(SPEED);
-            }
+	    }
             
             if("Water".equals(gob.contents())) {
                 tags.add(HAS_WATER);
             }
             
-            if(anyOf(tags, HERB, CRITTER, GEM, ARROW)) {
-                tags.add(PICKUP);
-            }
-            
-            if(anyOf(tags, DOMESTIC, HERB, TREE, BUSH)) {
-                tags.add(MENU);
-            }
-            
             Party.Member member = glob.party.memb.get(gob.id);
             if(member != null) {
                 tags.add(PARTY);
@@ -323,18 +447,18 @@ public enum GobTag {
                 }
             }
             
-            if((anyOf(tags, PLAYER) || ofType(name, CAN_AGGRO)) && !anyOf(tags, ME, PARTY, IN_COMBAT, KO, DEAD)) {
+            if((anyOf(tags, PLAYER) || (rules & R_CAN_AGGRO) != 0) && !anyOf(tags, ME, PARTY, IN_COMBAT, KO, DEAD)) {
                 tags.add(AGGRO_TARGET);
             }
     
-            ContainerInfo.get(name).ifPresent(container -> {
-                tags.add(CONTAINER);
+	    ContainerInfo.Container container = info.container;
+	    if(container != null) {
                 if(container.isFull(sdt)) {
                     tags.add(FULL);
                 } else if(container.isEmpty(sdt)) {
                     tags.add(EMPTY);
                 }
-            });
+	    }
     
             Drawable d = gob.drawable;
             if(d != null) {
@@ -364,15 +488,15 @@ public enum GobTag {
         return false;
     }
     
-    private static boolean domesticated(Gob gob, String name, Set<GobTag> tags) {
-        if(name.contains("/cattle/")) {
+    private static boolean domesticated(String name, int m, Set<GobTag> tags) {
+        if(has(m, P_CATTLE)) {
             tags.add(CATTLE);
             //TODO: add distinction between cow and bull
             if(name.endsWith("/calf")) {
                 tags.add(CALF);
             }
             return true;
-        } else if(name.contains("/goat/")) {
+        } else if(has(m, P_GOAT)) {
             tags.add(GOAT);
             if(name.endsWith("/billy")) {
                 tags.add(BILLY);
@@ -382,7 +506,7 @@ public enum GobTag {
                 tags.add(KID);
             }
             return true;
-        } else if(name.contains("/horse/")) {
+        } else if(has(m, P_HORSE)) {
             tags.add(HORSE);
             if(name.endsWith("/foal")) {
                 tags.add(FOAL);
@@ -392,7 +516,7 @@ public enum GobTag {
                 tags.add(STALLION);
             }
             return true;
-        } else if(name.contains("/pig/")) {
+        } else if(has(m, P_PIG)) {
             tags.add(PIG);
             if(name.endsWith("/hog")) {
                 tags.add(HOG);
@@ -402,7 +526,7 @@ public enum GobTag {
                 tags.add(SOW);
             }
             return true;
-        } else if(name.contains("/sheep/")) {
+        } else if(has(m, P_SHEEP)) {
             tags.add(SHEEP);
             //TODO: add distinction between ewe and ram
             if(name.endsWith("/lamb")) {
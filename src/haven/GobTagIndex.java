@@ -0,0 +1,164 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/* Secondary indexes of the gobs in an OCache by resource name, by
+ * tag, and of those carrying a map icon. Updates are serialized on the index. The sets handed out are
+ * concurrent, so they can be iterated from any thread while gobs come
+ * and go, with the usual weakly consistent view. */
+public class GobTagIndex {
+    private final Map<GobTag, Set<Gob>> bytag = new EnumMap<>(GobTag.class);
+    private final Map<String, Set<Gob>> byname = new ConcurrentHashMap<>();
+    private final Set<Gob> icons = ConcurrentHashMap.newKeySet();
+
+    public GobTagIndex() {
+	for(GobTag tag : GobTag.values())
+	    bytag.put(tag, ConcurrentHashMap.newKeySet());
+    }
+
+    private void insert(Gob gob, String name, Set<GobTag> tags) {
+	if(name != null)
+	    byname.computeIfAbsent(name, k -> ConcurrentHashMap.newKeySet()).add(gob);
+	for(GobTag tag : tags)
+	    bytag.get(tag).add(gob);
+    }
+
+    private void delete(Gob gob, String name, Set<GobTag> tags) {
+	if(name != null) {
+	    Set<Gob> set = byname.get(name);
+	    if(set != null) {
+		set.remove(gob);
+		if(set.isEmpty())
+		    byname.remove(name);
+	    }
+	}
+	for(GobTag tag : tags)
+	    bytag.get(tag).remove(gob);
+    }
+
+    public synchronized void add(Gob gob) {
+	if(gob.indexed)
+	    return;
+	gob.indexed = true;
+	insert(gob, gob.iname, gob.itags);
+	if(gob.iicon)
+	    icons.add(gob);
+    }
+
+    public synchronized void remove(Gob gob) {
+	if(!gob.indexed)
+	    return;
+	gob.indexed = false;
+	delete(gob, gob.iname, gob.itags);
+	icons.remove(gob);
+    }
+
+    /* Called whenever a gob gets or loses its GobIcon. */
+    public synchronized void icon(Gob gob, boolean has) {
+	gob.iicon = has;
+	if(!gob.indexed)
+	    return;
+	if(has)
+	    icons.add(gob);
+	else
+	    icons.remove(gob);
+    }
+
+    /* Called whenever a gob's resource name or tags may have changed.
+     * Gobs not currently in the cache only have the values recorded,
+     * for when they are added. */
+    public synchronized void update(Gob gob, String name, Set<GobTag> tags) {
+	Set<GobTag> prev = gob.itags;
+	String pname = gob.iname;
+	Set<GobTag> cur = tags.isEmpty() ? EnumSet.noneOf(GobTag.class) : EnumSet.copyOf(tags);
+	gob.itags = cur;
+	gob.iname = name;
+	if(!gob.indexed)
+	    return;
+	if(!Objects.equals(pname, name)) {
+	    delete(gob, pname, Collections.emptySet());
+	    insert(gob, name, Collections.emptySet());
+	}
+	for(GobTag tag : prev) {
+	    if(!cur.contains(tag))
+		bytag.get(tag).remove(gob);
+	}
+	for(GobTag tag : cur) {
+	    if(!prev.contains(tag))
+		bytag.get(tag).add(gob);
+	}
+    }
+
+    public Set<Gob> tagged(GobTag tag) {
+	return(Collections.unmodifiableSet(bytag.get(tag)));
+    }
+
+    public Set<Gob> named(String name) {
+	Set<Gob> ret = byname.get(name);
+	return((ret == null) ? Collections.emptySet() : Collections.unmodifiableSet(ret));
+    }
+
+    public Set<Gob> withicon() {
+	return(Collections.unmodifiableSet(icons));
+    }
+
+    /* Gobs whose resource name contains the given string, scanning
+     * the distinct names rather than the gobs. */
+    public List<Gob> containing(String part) {
+	List<Gob> ret = new ArrayList<>();
+	for(Map.Entry<String, Set<Gob>> ent : byname.entrySet()) {
+	    if(ent.getKey().contains(part))
+		ret.addAll(ent.getValue());
+	}
+	return(ret);
+    }
+
+    /* Gobs whose resource name starts with the given prefix. This
+     * scans the distinct names rather than the gobs. */
+    public List<Gob> prefixed(String prefix) {
+	List<Gob> ret = new ArrayList<>();
+	for(Map.Entry<String, Set<Gob>> ent : byname.entrySet()) {
+	    if(ent.getKey().startsWith(prefix))
+		ret.addAll(ent.getValue());
+	}
+	return(ret);
+    }
+
+    public List<Gob> tagged(GobTag tag, Coord2d c, double r) {
+	List<Gob> ret = new ArrayList<>();
+	for(Gob gob : bytag.get(tag)) {
+	    Coord2d rc = gob.rc;
+	    if((rc != null) && (rc.dist(c) <= r))
+		ret.add(gob);
+	}
+	return(ret);
+    }
+}
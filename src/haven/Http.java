@@ -33,6 +33,16 @@ import java.net.*;
 public class Http {
     public static final String USER_AGENT = useragent();
     public static final SslHelper ssl = sslconf();
+    public static final Config.Variable<Integer> maxconns = Config.Variable.propi("haven.httpconns", 8);
+
+    static {
+	/* The JRE keeps idle persistent connections per destination
+	 * in its keep-alive cache, but only up to http.maxConnections
+	 * (default 5) of them, which would have the resource loaders
+	 * reconnect every time they outnumber it. */
+	if(System.getProperty("http.maxConnections") == null)
+	    System.setProperty("http.maxConnections", String.valueOf(maxconns.get()));
+    }
 
     private static String useragent() {
 	StringBuilder buf = new StringBuilder();
@@ -68,13 +78,90 @@ public class Http {
 	return(conn);
     }
 
+    /* A connection can only be handed back to the keep-alive cache
+     * once its response has been read to the end, including the body
+     * of an error response. */
+    private static void release(HttpURLConnection c) {
+	try(InputStream err = c.getErrorStream()) {
+	    if(err != null) {
+		byte[] buf = new byte[1024];
+		while(err.read(buf) >= 0);
+	    }
+	} catch(IOException e) {
+	}
+    }
+
+    private static InputStream get(URLConnection c) throws IOException {
+	try {
+	    return(c.getInputStream());
+	} catch(IOException e) {
+	    if(c instanceof HttpURLConnection)
+		release((HttpURLConnection)c);
+	    throw(e);
+	}
+    }
+
+    /* Thrown when a resumed transfer finds that the resource has
+     * changed since the transfer began. Not retried, since the data
+     * already read cannot be taken back. */
+    public static class ChangedException extends IOException {
+	public ChangedException(URL url) {
+	    super("resource changed during transfer: " + url);
+	}
+    }
+
+    /* Only a strong entity tag or a modification date can be used to
+     * make a range request conditional. */
+    private static String validator(URLConnection c) {
+	String tag = c.getHeaderField("ETag");
+	if((tag != null) && !tag.startsWith("W/"))
+	    return(tag);
+	return(c.getHeaderField("Last-Modified"));
+    }
+
     public static InputStream fetch(URL url, Consumer<URLConnection> init) throws IOException {
 	RetryingInputStream ret = new RetryingInputStream() {
-		protected InputStream create() throws IOException {
+		String validator = null;
+		long length = -1;
+
+		protected InputStream create(long pos) throws IOException {
 		    URLConnection c = open(url);
 		    if(init != null)
 			init.accept(c);
-		    return(c.getInputStream());
+		    boolean http = c instanceof HttpURLConnection;
+		    /* Without a validator the server cannot be asked to
+		     * resume only an unchanged resource, so it is fetched
+		     * again from the start. */
+		    if(http && (pos > 0) && (validator != null)) {
+			c.setRequestProperty("Range", "bytes=" + pos + "-");
+			c.setRequestProperty("If-Range", validator);
+		    }
+		    InputStream ret = get(c);
+		    if(pos == 0) {
+			validator = validator(c);
+			length = c.getContentLengthLong();
+			return(ret);
+		    }
+		    /* Resume a broken transfer where it left off if the
+		     * server honors the range, or else skip forward
+		     * through the full response, provided it is still
+		     * the same one. */
+		    if(http && (((HttpURLConnection)c).getResponseCode() == HttpURLConnection.HTTP_PARTIAL))
+			return(ret);
+		    String cv = validator(c);
+		    long cl = c.getContentLengthLong();
+		    if(((validator != null) && !validator.equals(cv)) || ((length >= 0) && (cl >= 0) && (cl != length))) {
+			ret.close();
+			throw(new ChangedException(url));
+		    }
+		    for(long s = 0; s < pos; s += ret.skip(pos - s));
+		    return(ret);
+		}
+
+		protected void retry(int retries, IOException lasterr) throws IOException {
+		    if(lasterr instanceof ChangedException)
+			throw(lasterr);
+		    super.retry(retries, lasterr);
 		}
 	    };
 	ret.check();
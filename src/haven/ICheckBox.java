@@ -53,7 +53,7 @@ public class ICheckBox extends ACheckBox {
 	this.hoverup = hoverup;
 	this.hoverdown = hoverdown;
 	if(up instanceof TexI)
-	    this.img = ((TexI)up).back;
+	    this.img = ((TexI)up).back();
 	else
 	    this.img = null;
     }
@@ -82,7 +82,7 @@ public class ICheckBox extends ACheckBox {
 	this.hoverup = hoverup;
 	this.hoverdown = hoverdown;
 	if(up instanceof TexI)
-	    this.img = ((TexI)up).back;
+	    this.img = ((TexI)up).back();
 	else
 	    this.img = null;
     }
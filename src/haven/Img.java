@@ -59,7 +59,7 @@ public class Img extends Widget {
 	this.img = img;
 	resize(img.sz());
 	if(img instanceof TexI)
-	    rimg = ((TexI)img).back;
+	    rimg = ((TexI)img).back();
 	else
 	    rimg = null;
     }
@@ -27,4 +27,19 @@
 package haven;
 
 public interface Indir<T> extends java.util.function.Supplier<T> {
+    /* Returns the value, or null if it is not available yet.
+     * Implementations that know cheaply whether they are done
+     * should override this to avoid throwing Loading at all. */
+    public default T tryGet() {
+	try {
+	    return(get());
+	} catch(Loading l) {
+	    return(null);
+	}
+    }
+
+    public default T poll(T def) {
+	T ret = tryGet();
+	return((ret == null) ? def : ret);
+    }
 }
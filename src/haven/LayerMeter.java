@@ -29,7 +29,7 @@ package haven;
 import java.awt.Color;
 import java.util.*;
 
-public abstract class LayerMeter extends Widget implements ItemInfo.Owner {
+public abstract class LayerMeter extends Widget implements ItemInfo.Owner, Widget.RawMessage {
     protected ItemInfo.Raw rawinfo = null;
     protected List<ItemInfo> info = Collections.emptyList();
     public List<Meter> meters = Collections.emptyList();
@@ -63,6 +63,16 @@ public abstract class LayerMeter extends Widget implements ItemInfo.Owner {
 	    return(Utils.dv(arg));
     }
 
+    private static double av(Message args) {
+	switch(args.nexttype()) {
+	case Message.T_INT: case Message.T_UINT8: case Message.T_UINT16:
+	case Message.T_INT8: case Message.T_INT16:
+	    return(args.tint() * 0.01);
+	default:
+	    return(args.tfloat());
+	}
+    }
+
     public static List<Meter> decmeters(Object[] args, int s) {
 	if(args.length == s)
 	    return(Collections.emptyList());
@@ -108,6 +118,30 @@ public abstract class LayerMeter extends Widget implements ItemInfo.Owner {
 	}
     }
 
+    public boolean rawmsg(String msg, Message args) {
+	if(msg == "set") {
+	    if(args.endlist()) {
+		set(Collections.emptyList());
+		return(true);
+	    }
+	    double a = av(args);
+	    if(args.endlist()) {
+		set(a, meters.isEmpty() ? Color.WHITE : meters.get(0).c);
+	    } else {
+		ArrayList<Meter> buf = new ArrayList<>();
+		buf.add(new Meter(a, args.tcolor()));
+		while(!args.endlist()) {
+		    a = av(args);
+		    buf.add(new Meter(a, args.tcolor()));
+		}
+		buf.trimToSize();
+		set(buf);
+	    }
+	    return(true);
+	}
+	return(false);
+    }
+
     public void uimsg(String msg, Object... args) {
 	if(msg == "set") {
 	    if(args.length == 1) {
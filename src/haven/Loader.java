@@ -32,13 +32,21 @@ import java.util.concurrent.atomic.*;
 import haven.Waitable.Waiting;
 
 public class Loader {
-    private final double timeout = 5.0;
-    private final int maxthreads = 4;
-    private final Queue<Future<?>> queue = new LinkedList<>();
+    private final WorkPool pool;
+    private final WorkPool.Lane lane;
     private final Map<Future<?>, Waiting> loading = new IdentityHashMap<>();
-    private final Collection<Thread> pool = new ArrayList<>();
+    private final AtomicInteger queued = new AtomicInteger(0);
     private final AtomicInteger busy = new AtomicInteger(0);
 
+    public Loader(WorkPool pool, WorkPool.Lane lane) {
+	this.pool = pool;
+	this.lane = lane;
+    }
+
+    public Loader() {
+	this(Defer.pool(), WorkPool.Lane.NOW);
+    }
+
     public class Future<T> implements haven.Future<T> {
 	public final Supplier<T> task;
 	private final boolean capex;
@@ -77,31 +85,30 @@ public class Loader {
 			    l.boostprio(1);
 			    curload = l;
 			    l.waitfor(() -> {
-				    synchronized(queue) {
+				    boolean rq = false;
+				    synchronized(loading) {
 					if(loading.remove(this) != null) {
 					    curload = null;
-					    queue.add(this);
-					    queue.notify();
+					    rq = true;
 					}
 				    }
-				    check();
+				    if(rq)
+					submit(this);
 				},
 				wait -> {
-				    boolean ck = false;
-				    synchronized(queue) {
+				    boolean rq = false;
+				    synchronized(loading) {
 					if(restarted) {
 					    curload = null;
-					    queue.add(this);
-					    queue.notify();
-					    ck = true;
+					    rq = true;
 					    restarted = false;
 					} else {
 					    if(loading.put(this, wait) != null)
 						throw(new AssertionError());
 					}
 				    }
-				    if(ck)
-					check();
+				    if(rq)
+					submit(this);
 				});
 			}
 		    } catch(Throwable exc) {
@@ -130,7 +137,7 @@ public class Loader {
 		}
 	    }
 	    Waiting wait;
-	    synchronized(queue) {
+	    synchronized(loading) {
 		if((wait = loading.remove(this)) != null)
 		    curload = null;
 	    }
@@ -141,7 +148,7 @@ public class Loader {
 
 	public void restart() {
 	    Waiting wait;
-	    synchronized(queue) {
+	    synchronized(loading) {
 		wait = loading.remove(this);
 		if(wait != null)
 		    curload = null;
@@ -150,11 +157,7 @@ public class Loader {
 	    }
 	    if(wait != null) {
 		wait.cancel();
-		synchronized(queue) {
-		    queue.add(this);
-		    queue.notify();
-		}
-		check();
+		submit(this);
 	    }
 	}
 
@@ -182,52 +185,17 @@ public class Loader {
 	}
     }
 
-    private void loop() {
-	try {
-	    main: while(true) {
-		Future<?> item;
-		synchronized(queue) {
-		    double start = Utils.rtime(), now = start;
-		    while(true) {
-			if(Thread.interrupted())
-			    throw(new InterruptedException());
-			if((item = queue.poll()) != null)
-			    break;
-			if((now - start) >= timeout)
-			    break main;
-			queue.wait((long)((timeout - (now - start)) * 1000) + 100);
-			now = Utils.rtime();
-		    }
-		}
-		item.run();
-	    }
-	} catch(InterruptedException e) {
-	} finally {
-	    synchronized(queue) {
-		pool.remove(Thread.currentThread());
-	    }
-	}
-	check();
-    }
-
-    private void check() {
-	synchronized(queue) {
-	    if((queue.size() > pool.size()) && (pool.size() < maxthreads)) {
-		Thread th = new HackThread(this::loop, "Loader thread");
-		th.setDaemon(true);
-		th.start();
-		pool.add(th);
-	    }
-	}
+    private void submit(Future<?> f) {
+	queued.getAndIncrement();
+	pool.submit(() -> {
+		queued.getAndDecrement();
+		f.run();
+	    }, lane);
     }
 
     public <T> Future<T> defer(Supplier<T> task, boolean capex) {
 	Future<T> ret = new Future<T>(task, capex);
-	synchronized(queue) {
-	    queue.add(ret);
-	    queue.notify();
-	}
-	check();
+	submit(ret);
 	return(ret);
     }
 
@@ -243,8 +211,8 @@ public class Loader {
     }
 
     public String stats() {
-	synchronized(queue) {
-	    return(String.format("%d+%d %d/%d", queue.size(), loading.size(), busy.get(), pool.size()));
+	synchronized(loading) {
+	    return(String.format("%d+%d %d", queued.get(), loading.size(), busy.get()));
 	}
     }
 }
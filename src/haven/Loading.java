@@ -26,40 +26,119 @@
 
 package haven;
 
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 public class Loading extends RuntimeException implements Waitable {
+    /* Loading is thrown as plain control flow whenever something is
+     * not available yet, so filling in a stack trace for every
+     * instance is mostly wasted effort. Traces are only captured
+     * when explicitly asked for. Otherwise, one in every
+     * haven.loadsample throws walks the stack anyway, so that the
+     * counts by call site, which tell which callers are worth
+     * converting to tryGet(), are still estimated. */
+    public static final Config.Variable<Boolean> traces = Config.Variable.propb("haven.loadtrace", false);
+    public static final Config.Variable<Integer> sample = Config.Variable.propi("haven.loadsample", 64);
+    private static final Map<String, LongAdder> sites = new ConcurrentHashMap<>();
+    private static final LongAdder total = new LongAdder();
+    private static final AtomicInteger nsampled = new AtomicInteger();
     public final Loading rec;
 
     public Loading() {
-	super();
-	rec = null;
+	this(null, null, null);
     }
 
     public Loading(String msg) {
-	super(msg);
-	rec = null;
+	this(msg, null, null);
     }
     
     public Loading(Throwable cause) {
-	super(cause);
-	rec = null;
+	this((cause == null) ? null : cause.toString(), cause, null);
     }
     
     public Loading(String msg, Throwable cause) {
-	super(msg, cause);
-	rec = null;
+	this(msg, cause, null);
     }
 
     public Loading(Loading rec) {
-	super(rec);
-	this.rec = rec;
+	this((rec == null) ? null : rec.toString(), rec, rec);
     }
 
     public Loading(String msg, Loading rec) {
-	super(msg, rec);
+	this(msg, rec, rec);
+    }
+
+    private Loading(String msg, Throwable cause, Loading rec) {
+	super(msg, cause, true, traces.get());
 	this.rec = rec;
+	count();
+    }
+
+    private void count() {
+	total.increment();
+	StackTraceElement[] st;
+	int weight;
+	if(traces.get()) {
+	    st = getStackTrace();
+	    weight = 1;
+	} else {
+	    int n = sample.get();
+	    if((n <= 0) || ((nsampled.incrementAndGet() % n) != 0))
+		return;
+	    st = new Throwable().getStackTrace();
+	    weight = n;
+	}
+	String site = site(st);
+	LongAdder c = sites.get(site);
+	if(c == null)
+	    c = sites.computeIfAbsent(site, k -> new LongAdder());
+	c.add(weight);
+    }
+
+    private static String frame(StackTraceElement el) {
+	String nm = el.getClassName();
+	if(nm.startsWith("haven."))
+	    nm = nm.substring(6);
+	return(nm + "." + el.getMethodName());
+    }
+
+    /* The method that threw, and the one that called it, skipping
+     * the construction of the Loading itself. */
+    private static String site(StackTraceElement[] st) {
+	for(int i = 0; i < st.length; i++) {
+	    StackTraceElement el = st[i];
+	    if(el.getMethodName().equals("<init>") || el.getClassName().equals(Loading.class.getName()))
+		continue;
+	    if(i + 1 < st.length)
+		return(frame(el) + " < " + frame(st[i + 1]));
+	    return(frame(el));
+	}
+	return("?");
+    }
+
+    /* Throws by site. Unless traces are on, these are estimates
+     * scaled up from the sampled throws. */
+    public static Map<String, Long> counts() {
+	Map<String, Long> ret = new HashMap<>();
+	for(Map.Entry<String, LongAdder> ent : sites.entrySet())
+	    ret.put(ent.getKey(), ent.getValue().sum());
+	return(ret);
+    }
+
+    public static String stats() {
+	List<Map.Entry<String, Long>> top = new ArrayList<>(counts().entrySet());
+	long tot = total.sum();
+	top.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+	StringBuilder buf = new StringBuilder();
+	buf.append(tot);
+	for(int i = 0; i < Math.min(top.size(), 3); i++)
+	    buf.append(String.format(i == 0 ? " (%s %d" : ", %s %d", top.get(i).getKey(), top.get(i).getValue()));
+	if(!top.isEmpty())
+	    buf.append(")");
+	return(buf.toString());
     }
 
     public String getMessage() {
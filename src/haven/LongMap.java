@@ -0,0 +1,284 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+
+/* Open-addressing map from primitive longs, to avoid boxing a key on
+ * every lookup. Deleted slots are left as tombstones until the next
+ * rehash so that iterators can remove entries safely. */
+public class LongMap<V> extends AbstractMap<Long, V> {
+    private static final Object nil = new Object(), del = new Object();
+    private long[] keys;
+    private Object[] vals;
+    private int sz, used, mask;
+
+    public LongMap(int capacity) {
+	int n = 8;
+	while(n * 3 < capacity * 4)
+	    n <<= 1;
+	init(n);
+    }
+
+    public LongMap() {
+	this(0);
+    }
+
+    public LongMap(Map<Long, V> m) {
+	this(m.size());
+	putAll(m);
+    }
+
+    private void init(int n) {
+	keys = new long[n];
+	vals = new Object[n];
+	mask = n - 1;
+	sz = used = 0;
+    }
+
+    private Object icast(V v) {
+	return((v == null)?nil:v);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V ocast(Object v) {
+	return((v == nil)?null:((V)v));
+    }
+
+    private static int hash(long k) {
+	k *= 0x9e3779b97f4a7c15L;
+	return((int)(k ^ (k >>> 32)));
+    }
+
+    private int find(long k) {
+	for(int i = hash(k) & mask;; i = (i + 1) & mask) {
+	    Object v = vals[i];
+	    if(v == null)
+		return(-1);
+	    if((v != del) && (keys[i] == k))
+		return(i);
+	}
+    }
+
+    private void rehash(int n) {
+	long[] ok = keys;
+	Object[] ov = vals;
+	init(n);
+	for(int i = 0; i < ov.length; i++) {
+	    if((ov[i] != null) && (ov[i] != del)) {
+		int o = hash(ok[i]) & mask;
+		while(vals[o] != null)
+		    o = (o + 1) & mask;
+		keys[o] = ok[i];
+		vals[o] = ov[i];
+		sz++; used++;
+	    }
+	}
+    }
+
+    public int size() {
+	return(sz);
+    }
+
+    public boolean containsKey(long k) {
+	return(find(k) >= 0);
+    }
+
+    public boolean containsKey(Object k) {
+	if(!(k instanceof Long))
+	    return(false);
+	return(containsKey(((Long)k).longValue()));
+    }
+
+    public V get(long k) {
+	int i = find(k);
+	return((i < 0) ? null : ocast(vals[i]));
+    }
+
+    public V get(Object k) {
+	if(!(k instanceof Long))
+	    return(null);
+	return(get(((Long)k).longValue()));
+    }
+
+    public V put(long k, V v) {
+	int i = hash(k) & mask, free = -1;
+	for(;; i = (i + 1) & mask) {
+	    Object cv = vals[i];
+	    if(cv == null)
+		break;
+	    if(cv == del) {
+		if(free < 0)
+		    free = i;
+	    } else if(keys[i] == k) {
+		V ret = ocast(cv);
+		vals[i] = icast(v);
+		return(ret);
+	    }
+	}
+	if(free >= 0) {
+	    i = free;
+	} else {
+	    used++;
+	}
+	keys[i] = k;
+	vals[i] = icast(v);
+	sz++;
+	if(used * 4 > vals.length * 3)
+	    rehash((sz * 2 > vals.length / 2) ? (vals.length * 2) : vals.length);
+	return(null);
+    }
+
+    public V put(Long k, V v) {
+	return(put(k.longValue(), v));
+    }
+
+    private V removeat(int i) {
+	V ret = ocast(vals[i]);
+	vals[i] = del;
+	sz--;
+	return(ret);
+    }
+
+    public V remove(long k) {
+	int i = find(k);
+	return((i < 0) ? null : removeat(i));
+    }
+
+    public V remove(Object k) {
+	if(!(k instanceof Long))
+	    return(null);
+	return(remove(((Long)k).longValue()));
+    }
+
+    public void clear() {
+	init(8);
+    }
+
+    private class IteredEntry implements Entry<Long, V> {
+	private final int i;
+
+	private IteredEntry(int i) {
+	    this.i = i;
+	}
+
+	public Long getKey() {return(keys[i]);}
+	public V getValue()  {return(ocast(vals[i]));}
+
+	@SuppressWarnings("unchecked")
+	public boolean equals(Object o) {
+	    return((o instanceof LongMap.IteredEntry) && (((IteredEntry)o).i == i));
+	}
+
+	public int hashCode() {
+	    return(hash(keys[i]));
+	}
+
+	public V setValue(V nv) {
+	    V ret = ocast(vals[i]);
+	    vals[i] = icast(nv);
+	    return(ret);
+	}
+    }
+
+    private abstract class SlotIterator<T> implements Iterator<T> {
+	private final Object[] vals = LongMap.this.vals;
+	private int ni = -1, li = -1;
+
+	public boolean hasNext() {
+	    if(ni < 0) {
+		for(ni = li + 1; ni < vals.length; ni++) {
+		    if((vals[ni] != null) && (vals[ni] != del))
+			break;
+		}
+	    }
+	    return(ni < vals.length);
+	}
+
+	protected int nexti() {
+	    if(!hasNext())
+		throw(new NoSuchElementException());
+	    li = ni;
+	    ni = -1;
+	    return(li);
+	}
+
+	public void remove() {
+	    if((li < 0) || (vals[li] == del))
+		throw(new IllegalStateException());
+	    if(vals != LongMap.this.vals)
+		throw(new ConcurrentModificationException());
+	    removeat(li);
+	}
+    }
+
+    private Set<Entry<Long, V>> entries = null;
+    public Set<Entry<Long, V>> entrySet() {
+	if(entries == null)
+	    entries = new AbstractSet<Entry<Long, V>>() {
+		public int size() {
+		    return(sz);
+		}
+
+		public Iterator<Entry<Long, V>> iterator() {
+		    return(new SlotIterator<Entry<Long, V>>() {
+			    public Entry<Long, V> next() {
+				return(new IteredEntry(nexti()));
+			    }
+			});
+		}
+
+		public void clear() {
+		    LongMap.this.clear();
+		}
+	    };
+	return(entries);
+    }
+
+    private Collection<V> values = null;
+    public Collection<V> values() {
+	if(values == null)
+	    values = new AbstractCollection<V>() {
+		public int size() {
+		    return(sz);
+		}
+
+		public Iterator<V> iterator() {
+		    return(new SlotIterator<V>() {
+			    public V next() {
+				return(ocast(vals[nexti()]));
+			    }
+			});
+		}
+
+		public void clear() {
+		    LongMap.this.clear();
+		}
+	    };
+	return(values);
+    }
+}
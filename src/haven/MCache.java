@@ -863,7 +863,9 @@ public class MCache implements MapSource {
      * become unreachable just because the thread-local itself becomes
      * unreachable, so keep the grid in a weak reference. */
     private final ThreadLocal<Reference<Grid>> cached = new ThreadLocal<>();
-    public Grid getgrid(Coord gc) {
+    /* Like getgrid, but returns null instead of throwing while the
+     * grid is still being requested. */
+    public Grid trygetgrid(Coord gc) {
 	Reference<Grid> ref = cached.get();
 	Grid ret = (ref == null) ? null : ref.get();
 	if((ret != null) && ret.gc.equals(gc) && !ret.removed)
@@ -872,13 +874,20 @@ public class MCache implements MapSource {
 	    ret = grids.get(gc);
 	    if(ret == null) {
 		request(gc);
-		throw(new LoadingMap(this, gc));
+		return(null);
 	    }
 	    cached.set(new WeakReference<>(ret));
 	    return(ret);
 	}
     }
 
+    public Grid getgrid(Coord gc) {
+	Grid ret = trygetgrid(gc);
+	if(ret == null)
+	    throw(new LoadingMap(this, gc));
+	return(ret);
+    }
+
     public Grid getgridt(Coord tc) {
 	return(getgrid(tc.div(cmaps)));
     }
@@ -1175,8 +1184,11 @@ public class MCache implements MapSource {
 	Coord rc = new Coord();
 	for(rc.y = ul.y; rc.y <= br.y; rc.y++) {
 	    for(rc.x = ul.x; rc.x <= br.x; rc.x++) {
+		Grid g = trygetgrid(rc.div(cutn));
+		if(g == null)
+		    continue;
 		try {
-		    getcut(Coord.of(rc));
+		    g.getcut(rc.mod(cutn));
 		} catch(Loading e) {}
 	    }
 	}
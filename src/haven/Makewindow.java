@@ -405,7 +405,7 @@ public class Makewindow extends Widget {
     }
     
     private Tex buildQTex(Indir<Resource> res) {
-	BufferedImage result = PUtils.convolve(res.get().layer(Resource.imgc).img, qmodsz, CharWnd.iconfilter);
+	BufferedImage result = PUtils.convolve(res.get().layer(Resource.imgc).img(), qmodsz, CharWnd.iconfilter);
 	try {
 	    Glob.CAttr attr = ui.gui.chrwdg.findattr(res.get().basename());
 	    if(attr != null) {
@@ -137,7 +137,7 @@ public class MapDumper implements Defer.Callable<Object> {
 	    Resource.Image ir = r.layer(Resource.imgc);
 	    if(ir == null)
 		return (null);
-	    img = ir.img;
+	    img = ir.img();
 	    texes[t] = img;
 	}
 	return (img);
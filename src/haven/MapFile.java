@@ -456,7 +456,7 @@ public class MapFile {
 		if(r != null) {
 		    Resource.Image ir = r.layer(Resource.imgc);
 		    if(ir != null) {
-			texes[t] = ir.img;
+			texes[t] = ir.img();
 		    }
 		}
 		cached[t] = true;
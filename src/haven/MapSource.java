@@ -46,7 +46,7 @@ public interface MapSource {
 	    Resource.Image ir = r.layer(Resource.imgc);
 	    if(ir == null)
 		return(null);
-	    img = ir.img;
+	    img = ir.img();
 	    texes[t] = img;
 	}
 	return(img);
@@ -477,9 +477,9 @@ public class MapWnd extends WindowX implements Console.Directory {
 		Resource.Image fg = MiniMap.DisplayMarker.flagfg, bg = MiniMap.DisplayMarker.flagbg;
 		WritableRaster buf = PUtils.imgraster(new Coord(Math.max(fg.o.x + fg.sz.x, bg.o.x + bg.sz.x),
 								Math.max(fg.o.y + fg.sz.y, bg.o.y + bg.sz.y)));
-		PUtils.blit(buf, PUtils.coercergba(fg.img).getRaster(), fg.o);
+		PUtils.blit(buf, PUtils.coercergba(fg.img()).getRaster(), fg.o);
 		PUtils.colmul(buf, col);
-		PUtils.alphablit(buf, PUtils.coercergba(bg.img).getRaster(), bg.o);
+		PUtils.alphablit(buf, PUtils.coercergba(bg.img()).getRaster(), bg.o);
 		icon = new TexI(PUtils.uiscale(PUtils.rasterimg(buf), new Coord(iconsz, iconsz)));
 	    }
 	    return(icon);
@@ -523,7 +523,7 @@ public class MapWnd extends WindowX implements Console.Directory {
 
 	public Tex icon() {
 	    if(icon == null) {
-		BufferedImage img = spec.get().flayer(Resource.imgc).img;
+		BufferedImage img = spec.get().flayer(Resource.imgc).img();
 		icon = new TexI(PUtils.uiscale(img, new Coord((iconsz * img.getWidth())/ img.getHeight(), iconsz)));
 	    }
 	    return(icon);
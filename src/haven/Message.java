@@ -351,6 +351,135 @@ public abstract class Message {
 	return(ret);
     }
 
+    /* Pull-style access to tagged data. These decode values directly
+     * from the message, for receivers that want to avoid the boxed
+     * Object[] tree built by list() and tto(). */
+    public int nexttype() {
+	if(eom())
+	    return(T_END);
+	return(rbuf[rh] & 0xff);
+    }
+
+    private BinError badtype(String what, int t) {
+	return(new FormatError("expected " + what + ", got type tag " + t).msg(this));
+    }
+
+    private int tint(int t) {
+	switch(t) {
+	case T_INT:    return(int32());
+	case T_UINT8:  return(uint8());
+	case T_UINT16: return(uint16());
+	case T_INT8:   return(int8());
+	case T_INT16:  return(int16());
+	default: throw(badtype("integer", t));
+	}
+    }
+
+    public int tint() {
+	return(tint(uint8()));
+    }
+
+    public double tfloat() {
+	int t = uint8();
+	switch(t) {
+	case T_FLOAT8:  return(float8());
+	case T_FLOAT16: return(float16());
+	case T_FLOAT32: return(float32());
+	case T_FLOAT64: return(float64());
+	case T_SNORM8:  return(snorm8());
+	case T_SNORM16: return(snorm16());
+	case T_SNORM32: return(snorm32());
+	case T_UNORM8:  return(unorm8());
+	case T_UNORM16: return(unorm16());
+	case T_UNORM32: return(unorm32());
+	case T_MNORM8:  return(mnorm8());
+	case T_MNORM16: return(mnorm16());
+	case T_MNORM32: return(mnorm32());
+	default: return(tint(t));
+	}
+    }
+
+    public String tstr() {
+	int t = uint8();
+	switch(t) {
+	case T_STR: return(string());
+	case T_NIL: return(null);
+	default: throw(badtype("string", t));
+	}
+    }
+
+    public Coord tcoord() {
+	int t = uint8();
+	if(t != T_COORD)
+	    throw(badtype("coord", t));
+	return(coord());
+    }
+
+    public Color tcolor() {
+	int t = uint8();
+	if(t != T_COLOR)
+	    throw(badtype("color", t));
+	return(color());
+    }
+
+    public void enterlist() {
+	int t = uint8();
+	if((t != T_TTOL) && (t != T_MAP))
+	    throw(badtype("list", t));
+    }
+
+    /* Returns true, consuming the terminator, if the current list has
+     * no more elements. */
+    public boolean endlist() {
+	if(eom())
+	    return(true);
+	if((rbuf[rh] & 0xff) == T_END) {
+	    rh++;
+	    return(true);
+	}
+	return(false);
+    }
+
+    public void leavelist() {
+	while(!endlist())
+	    skiptto();
+    }
+
+    public void skiptto() {
+	int t = uint8();
+	switch(t) {
+	case T_NIL: break;
+	case T_UINT8: case T_INT8: case T_FLOAT8:
+	case T_SNORM8: case T_UNORM8: case T_MNORM8:
+	    skip(1); break;
+	case T_UINT16: case T_INT16: case T_FLOAT16:
+	case T_SNORM16: case T_UNORM16: case T_MNORM16:
+	    skip(2); break;
+	case T_INT: case T_FLOAT32:
+	case T_SNORM32: case T_UNORM32: case T_MNORM32:
+	case T_COLOR:
+	    skip(4); break;
+	case T_COORD: case T_FLOAT64: case T_UID: case T_FCOORD32:
+	    skip(8); break;
+	case T_FCOLOR: case T_FCOORD64:
+	    skip(16); break;
+	case T_STR:
+	    while(uint8() != 0);
+	    break;
+	case T_TTOL: case T_MAP:
+	    leavelist();
+	    break;
+	case T_BYTES:
+	    int len = uint8();
+	    if((len & 128) != 0)
+		len = int32();
+	    skip(len);
+	    break;
+	default:
+	    throw(new FormatError("unknown type tag: " + t).msg(this));
+	}
+    }
+
     public abstract void overflow(int min);
 
     private void wensure(int len) {
@@ -26,6 +26,8 @@
 
 package haven;
 
+import java.util.*;
+
 public class MessageBuf extends Message implements java.io.Serializable {
     public static final MessageBuf nil = new MessageBuf();
     private final int oh;
@@ -49,9 +51,17 @@ public class MessageBuf extends Message implements java.io.Serializable {
     public MessageBuf(Message from) {
 	if(from instanceof MessageBuf) {
 	    MessageBuf fb = (MessageBuf)from;
-	    this.rbuf = fb.rbuf;
-	    this.rh = this.oh = fb.rh;
-	    this.rt = fb.rt;
+	    if(fb.pooled()) {
+		/* The copy may outlive the source's reference to its
+		 * buffer, so it cannot share it. */
+		this.rbuf = Arrays.copyOfRange(fb.rbuf, fb.rh, fb.rt);
+		this.rh = this.oh = 0;
+		this.rt = rbuf.length;
+	    } else {
+		this.rbuf = fb.rbuf;
+		this.rh = this.oh = fb.rh;
+		this.rt = fb.rt;
+	    }
 	    this.wbuf = fb.wbuf;
 	    this.wh = this.wt = fb.wh;
 	} else {
@@ -61,6 +71,21 @@ public class MessageBuf extends Message implements java.io.Serializable {
 	}
     }
 
+    /* Whether rbuf is on loan from a BufPool. */
+    protected boolean pooled() {
+	return(false);
+    }
+
+    /* Skips past the next len bytes, returning their offset in
+     * rbuf, so that a view of them can be made without copying. */
+    public int view(int len) {
+	if(len > rt - rh)
+	    throw(new EOF("Required " + len + " bytes, got only " + (rt - rh)).msg(this));
+	int ret = rh;
+	rh += len;
+	return(ret);
+    }
+
     public boolean underflow(int hint) {
 	return(false);
     }
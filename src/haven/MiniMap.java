@@ -476,7 +476,9 @@ public class MiniMap extends Widget {
 		}
 		if(next != null) {
 		    try {
-			img = next.get();
+			/* Lower than terrain meshes, which wait at the
+			 * default priority. */
+			img = next.get(1);
 		    } catch(Loading l) {}
 		}
 		return(img);
@@ -668,22 +670,23 @@ public class MiniMap extends Widget {
 	}
 	List<DisplayIcon> ret = new ArrayList<>();
 	OCache oc = ui.sess.glob.oc;
-	synchronized(oc) {
-	    for(Gob gob : oc) {
-		try {
-		    GobIcon icon = gob.getattr(GobIcon.class);
-		    if(icon != null) {
-			GobIcon.Setting conf = iconconf.get(icon.icon());
-			if((conf != null) && conf.show && GobIconCategoryList.GobCategory.categorize(conf).enabled()) {
-			    DisplayIcon disp = pmap.remove(icon);
-			    if(disp == null)
-				disp = new DisplayIcon(icon, conf);
-			    disp.update(gob.rc, gob.a);
-			    ret.add(disp);
-			}
+	Collection<Gob> gobs = new ArrayList<>(oc.tagindex.withicon());
+	gobs.addAll(oc.locals());
+	for(Gob gob : gobs) {
+	    try {
+		GobIcon icon = gob.getattr(GobIcon.class);
+		GobIcon.Icon img = (icon == null) ? null : icon.tryicon();
+		if(img != null) {
+		    GobIcon.Setting conf = iconconf.get(img);
+		    if((conf != null) && conf.show && GobIconCategoryList.GobCategory.categorize(conf).enabled()) {
+			DisplayIcon disp = pmap.remove(icon);
+			if(disp == null)
+			    disp = new DisplayIcon(icon, conf);
+			disp.update(gob.rc, gob.a);
+			ret.add(disp);
 		    }
-		} catch(Loading l) {}
-	    }
+		}
+	    } catch(Loading l) {}
 	}
 	for(DisplayIcon disp : pmap.values()) {
 	    if(disp.force())
@@ -303,7 +303,7 @@ public class ModSprite extends Sprite implements Sprite.CUpd, EquipTarget {
     }
 
     protected void omods(Collection<Mod> buf, Gob gob) {
-	for(GAttrib attr : gob.attr.values()) {
+	for(GAttrib attr : gob.attrs()) {
 	    if(attr instanceof Mod)
 		buf.add((Mod)attr);
 	}
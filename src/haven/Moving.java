@@ -26,7 +26,7 @@
 
 package haven;
 
-public abstract class Moving extends GAttrib {
+public abstract class Moving extends GAttrib implements GAttrib.ExactTick {
     public Moving(Gob gob) {
 	super(gob);
     }
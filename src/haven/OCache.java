@@ -29,6 +29,8 @@ package haven;
 import java.util.*;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.lang.annotation.*;
 import java.lang.reflect.*;
 import haven.render.Render;
@@ -66,6 +68,13 @@ public class OCache implements Iterable<Gob> {
     private Glob glob;
     private final Collection<ChangeCallback> cbs = new WeakList<ChangeCallback>();
     public final PathVisualizer paths = new PathVisualizer();
+    /* The indices cover the same objects as stream(): those added
+     * through add(). Local objects registered with ladd() are not
+     * in them and are only reached by iterating the cache. */
+    public final GobIndex index = new GobIndex();
+    public final GobTagIndex tagindex = new GobTagIndex();
+    /* Fired whenever an object is added, removed or updated. */
+    public final Signal changed = new Signal();
     private final List<Disposable> disposables = new LinkedList<>();
 
     public interface ChangeCallback {
@@ -77,41 +86,41 @@ public class OCache implements Iterable<Gob> {
 	this.glob = glob;
 	
 	callback(Gob.CHANGED);
-	disposables.add(CFG.DISPLAY_GOB_HITBOX.observe(cfg -> gobAction(Gob::hitboxUpdated)));
-	disposables.add(CFG.DISPLAY_GOB_HITBOX_TOP.observe(cfg -> gobAction(Gob::hitboxUpdated)));
-	disposables.add(CFG.DISPLAY_GOB_HITBOX_FILLED.observe(cfg -> gobAction(Gob::hitboxUpdated)));
-	disposables.add(CFG.COLOR_HBOX_FILLED.observe(cfg -> gobAction(Gob::hitboxUpdated)));
-	disposables.add(CFG.COLOR_HBOX_SOLID.observe(cfg -> gobAction(Gob::hitboxUpdated)));
-	disposables.add(CFG.COLOR_HBOX_PASSABLE.observe(cfg -> gobAction(Gob::hitboxUpdated)));
-	disposables.add(CFG.HIDE_TREES.observe(cfg -> gobAction(Gob::visibilityUpdated)));
-	disposables.add(CFG.SKIP_HIDING_RADAR_TREES.observe(cfg -> gobAction(Gob::visibilityUpdated)));
-	disposables.add(CFG.DISPLAY_GOB_INFO.observe(cfg -> gobAction(Gob::infoUpdated)));
-	disposables.add(CFG.DISPLAY_GOB_INFO_DISABLED_PARTS.observe(cfg -> gobAction(Gob::infoUpdated)));
-	disposables.add(CFG.DISPLAY_GOB_INFO_SHORT.observe(cfg -> gobAction(Gob::infoUpdated)));
-	disposables.add(CFG.HIGHLIGHT_PARTY_IN_COMBAT.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.HIGHLIGHT_SELF_IN_COMBAT.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.HIGHLIGHT_ENEMY_IN_COMBAT.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.FLAT_TERRAIN.observe(cfg -> gobAction(Gob::markerUpdated)));
-	disposables.add(CFG.DISPLAY_AURA_SPEED_BUFF.observe(cfg -> gobAction(Gob::markerUpdated)));
-	disposables.add(CFG.DISPLAY_AURA_RABBIT.observe(cfg -> gobAction(Gob::markerUpdated)));
-	disposables.add(CFG.DISPLAY_AURA_CRITTERS.observe(cfg -> gobAction(Gob::markerUpdated)));
-	disposables.add(CFG.MARK_PARTY_IN_COMBAT.observe(cfg -> gobAction(Gob::markerUpdated)));
-	disposables.add(CFG.MARK_SELF_IN_COMBAT.observe(cfg -> gobAction(Gob::markerUpdated)));
-	disposables.add(CFG.MARK_ENEMY_IN_COMBAT.observe(cfg -> gobAction(Gob::markerUpdated)));
-	disposables.add(CFG.SHOW_CONTAINER_FULLNESS.observe(cfg -> gobAction(Gob::infoUpdated)));
-	disposables.add(CFG.SHOW_PROGRESS_COLOR.observe(cfg -> gobAction(Gob::infoUpdated)));
+	disposables.add(CFG.DISPLAY_GOB_HITBOX.observe(cfg -> refresh(Gob.RF_HITBOX)));
+	disposables.add(CFG.DISPLAY_GOB_HITBOX_TOP.observe(cfg -> refresh(Gob.RF_HITBOX)));
+	disposables.add(CFG.DISPLAY_GOB_HITBOX_FILLED.observe(cfg -> refresh(Gob.RF_HITBOX)));
+	disposables.add(CFG.COLOR_HBOX_FILLED.observe(cfg -> refresh(Gob.RF_HITBOX)));
+	disposables.add(CFG.COLOR_HBOX_SOLID.observe(cfg -> refresh(Gob.RF_HITBOX)));
+	disposables.add(CFG.COLOR_HBOX_PASSABLE.observe(cfg -> refresh(Gob.RF_HITBOX)));
+	disposables.add(CFG.HIDE_TREES.observe(cfg -> refresh(Gob.RF_VISIBILITY)));
+	disposables.add(CFG.SKIP_HIDING_RADAR_TREES.observe(cfg -> refresh(Gob.RF_VISIBILITY)));
+	disposables.add(CFG.DISPLAY_GOB_INFO.observe(cfg -> refresh(Gob.RF_INFO)));
+	disposables.add(CFG.DISPLAY_GOB_INFO_DISABLED_PARTS.observe(cfg -> refresh(Gob.RF_INFO)));
+	disposables.add(CFG.DISPLAY_GOB_INFO_SHORT.observe(cfg -> refresh(Gob.RF_INFO)));
+	disposables.add(CFG.HIGHLIGHT_PARTY_IN_COMBAT.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.HIGHLIGHT_SELF_IN_COMBAT.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.HIGHLIGHT_ENEMY_IN_COMBAT.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.FLAT_TERRAIN.observe(cfg -> refresh(Gob.RF_MARKER)));
+	disposables.add(CFG.DISPLAY_AURA_SPEED_BUFF.observe(cfg -> refresh(Gob.RF_MARKER)));
+	disposables.add(CFG.DISPLAY_AURA_RABBIT.observe(cfg -> refresh(Gob.RF_MARKER)));
+	disposables.add(CFG.DISPLAY_AURA_CRITTERS.observe(cfg -> refresh(Gob.RF_MARKER)));
+	disposables.add(CFG.MARK_PARTY_IN_COMBAT.observe(cfg -> refresh(Gob.RF_MARKER)));
+	disposables.add(CFG.MARK_SELF_IN_COMBAT.observe(cfg -> refresh(Gob.RF_MARKER)));
+	disposables.add(CFG.MARK_ENEMY_IN_COMBAT.observe(cfg -> refresh(Gob.RF_MARKER)));
+	disposables.add(CFG.SHOW_CONTAINER_FULLNESS.observe(cfg -> refresh(Gob.RF_INFO)));
+	disposables.add(CFG.SHOW_PROGRESS_COLOR.observe(cfg -> refresh(Gob.RF_INFO)));
 	
-	disposables.add(CFG.COLOR_GOB_READY.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.COLOR_GOB_FULL.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.COLOR_GOB_EMPTY.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.COLOR_GOB_PARTY.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.COLOR_GOB_LEADER.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.COLOR_GOB_SELF.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.COLOR_GOB_IN_COMBAT.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.COLOR_GOB_COMBAT_TARGET.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.COLOR_GOB_SPEED_BUFF.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.COLOR_GOB_RABBIT.observe(cfg -> gobAction(Gob::colorUpdated)));
-	disposables.add(CFG.COLOR_GOB_CRITTERS.observe(cfg -> gobAction(Gob::colorUpdated)));
+	disposables.add(CFG.COLOR_GOB_READY.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.COLOR_GOB_FULL.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.COLOR_GOB_EMPTY.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.COLOR_GOB_PARTY.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.COLOR_GOB_LEADER.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.COLOR_GOB_SELF.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.COLOR_GOB_IN_COMBAT.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.COLOR_GOB_COMBAT_TARGET.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.COLOR_GOB_SPEED_BUFF.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.COLOR_GOB_RABBIT.observe(cfg -> refresh(Gob.RF_COLOR)));
+	disposables.add(CFG.COLOR_GOB_CRITTERS.observe(cfg -> refresh(Gob.RF_COLOR)));
     }
     
     public void destroy() {
@@ -131,6 +140,15 @@ public class OCache implements Iterable<Gob> {
     
     public synchronized Stream<Gob> stream() {return Stream.of(objs.values().toArray(new Gob[0]));}
 
+    /* The local objects registered with ladd(), which the indices
+     * leave out. */
+    public synchronized List<Gob> locals() {
+	List<Gob> ret = new ArrayList<>();
+	for(Collection<Gob> gc : local)
+	    ret.addAll(gc);
+	return(ret);
+    }
+
     public synchronized void callback(ChangeCallback cb) {
 	cbs.add(cb);
     }
@@ -145,11 +163,15 @@ public class OCache implements Iterable<Gob> {
 	    synchronized(this) {
 		cbs = new ArrayList<>(this.cbs);
 		objs.put(ob.id, ob);
+		index.add(ob);
+		tagindex.add(ob);
+		liveadd(ob);
 	    }
 	    for(ChangeCallback cb : cbs) {
 		cb.added(ob);
 	    }
 	}
+	changed.fire();
     }
 
     public void remove(Gob ob) {
@@ -159,6 +181,11 @@ public class OCache implements Iterable<Gob> {
 	    old = objs.remove(ob.id, ob);
 	    if((old != null) && (old != ob))
 		throw(new RuntimeException(String.format("object %d removed wrong object", ob.id)));
+	    if(old != null) {
+		index.remove(old);
+		tagindex.remove(old);
+		liverem(old);
+	    }
 	    cbs = new ArrayList<>(this.cbs);
 	}
 	if(old != null) {
@@ -167,24 +194,244 @@ public class OCache implements Iterable<Gob> {
 		for(ChangeCallback cb : cbs)
 		    cb.removed(old);
 	    }
+	    changed.fire();
 	}
     }
 
-    public void ctick(double dt) {
-	ArrayList<Gob> copy = new ArrayList<Gob>();
+    /* All live gobs, both networked and local, in no particular
+     * order. Kept up to date on add and remove, so that the per-frame
+     * passes only need to copy an array to get a stable snapshot. The
+     * contents of collections passed to ladd are taken as fixed while
+     * they are registered. */
+    private Gob[] live = new Gob[64];
+    private int nlive = 0;
+
+    private void liveadd(Gob g) {
+	if(g.liveidx >= 0)
+	    return;
+	if(nlive == live.length)
+	    live = Arrays.copyOf(live, live.length * 2);
+	live[nlive] = g;
+	g.liveidx = nlive++;
+    }
+
+    private void liverem(Gob g) {
+	int i = g.liveidx;
+	if((i < 0) || (live[i] != g))
+	    return;
+	if(g.rflags != 0) {
+	    g.rflags = 0;
+	    nrefresh--;
+	}
+	Gob last = live[--nlive];
+	live[i] = last;
+	last.liveidx = i;
+	live[nlive] = null;
+	g.liveidx = -1;
+    }
+
+    /* Config changes only mark gobs with refresh flags, which are
+     * then handed to a limited number of gobs per frame. Several
+     * changes in quick succession thus coalesce, and toggling an
+     * option does not make every gob recompute its state in the same
+     * frame. */
+    private static final int refreshbudget = 256;
+    private int nrefresh = 0, refreshcur = 0;
+
+    public void refresh(int fl) {
 	synchronized(this) {
-	    for(Gob g : this)
-		copy.add(g);
+	    for(int i = 0; i < nlive; i++) {
+		Gob g = live[i];
+		if(g.rflags == 0)
+		    nrefresh++;
+		g.rflags |= fl;
+	    }
 	}
-	Consumer<Gob> task = g -> {
-	    synchronized(g) {
-		g.ctick(dt);
+    }
+
+    private void refreshstep() {
+	Gob[] batch;
+	int[] fls;
+	int n = 0;
+	synchronized(this) {
+	    if(nrefresh == 0)
+		return;
+	    batch = new Gob[Math.min(nrefresh, refreshbudget)];
+	    fls = new int[batch.length];
+	    for(int seen = 0; (seen < nlive) && (n < batch.length); seen++) {
+		if(refreshcur >= nlive)
+		    refreshcur = 0;
+		Gob g = live[refreshcur++];
+		if(g.rflags != 0) {
+		    batch[n] = g;
+		    fls[n++] = g.rflags;
+		    g.rflags = 0;
+		    nrefresh--;
+		}
+	    }
+	}
+	for(int i = 0; i < n; i++) {
+	    synchronized(batch[i]) {
+		batch[i].refresh(fls[i]);
 	    }
-	};
-	if(!Config.par.get())
-	    copy.forEach(task);
-	else
-	    copy.parallelStream().forEach(task);
+	}
+    }
+
+    private static class Snapshot {
+	Gob[] gobs = new Gob[0];
+	int n = 0;
+    }
+
+    private Snapshot snapshot(Snapshot s) {
+	synchronized(this) {
+	    if(s.gobs.length < nlive)
+		s.gobs = new Gob[live.length];
+	    System.arraycopy(live, 0, s.gobs, 0, nlive);
+	    if(s.n > nlive)
+		Arrays.fill(s.gobs, nlive, s.n, null);
+	    s.n = nlive;
+	}
+	return(s);
+    }
+
+    /* Runs a per-gob pass over a snapshot on a dedicated pool, in
+     * chunks sized from the measured per-gob cost so that each chunk
+     * is worth handing to another thread. Passes too cheap to gain
+     * from that run on the calling thread. */
+    private static final ForkJoinPool tickpool = new ForkJoinPool(Math.max(Runtime.getRuntime().availableProcessors() - 1, 1));
+    private static final long grainns = 100000;
+
+    private static class TickPass {
+	private double pergob = 2000;
+	private final AtomicLong spent = new AtomicLong();
+	private int n, grain, chunks;
+
+	interface Chunk {
+	    public void run(int chunk, Gob[] gobs, int from, int to);
+	}
+
+	int plan(int n) {
+	    this.n = n;
+	    int par = tickpool.getParallelism();
+	    if(!Config.par.get() || (par < 2) || (n * pergob < grainns * 2)) {
+		grain = Math.max(n, 1);
+	    } else {
+		grain = Math.max((int)(grainns / pergob), 8);
+		grain = Math.max(grain, (n + (par * 4) - 1) / (par * 4));
+	    }
+	    return(chunks = (n + grain - 1) / grain);
+	}
+
+	private void chunk(Chunk task, Gob[] gobs, int c) {
+	    long st = System.nanoTime();
+	    task.run(c, gobs, c * grain, Math.min((c + 1) * grain, n));
+	    spent.addAndGet(System.nanoTime() - st);
+	}
+
+	void run(Gob[] gobs, Chunk task) {
+	    spent.set(0);
+	    if(chunks == 1) {
+		chunk(task, gobs, 0);
+	    } else if(chunks > 1) {
+		class Range extends RecursiveAction {
+		    final int lo, hi;
+		    Range(int lo, int hi) {this.lo = lo; this.hi = hi;}
+		    protected void compute() {
+			if(hi - lo == 1) {
+			    chunk(task, gobs, lo);
+			} else {
+			    int mid = (lo + hi) / 2;
+			    invokeAll(new Range(lo, mid), new Range(mid, hi));
+			}
+		    }
+		}
+		tickpool.invoke(new Range(0, chunks));
+	    }
+	    if(n > 0)
+		pergob = (pergob * 0.9) + (((double)spent.get() / n) * 0.1);
+	}
+    }
+
+    private final Snapshot ctsnap = new Snapshot(), gtsnap = new Snapshot();
+    private final TickPass ctpass = new TickPass(), gtpass = new TickPass();
+    private Gob[] ctrun = new Gob[0];
+    private Render[] gtsubs = new Render[0];
+
+    /* Gobs far from the player are ticked less often, with the time
+     * they skipped accumulated into their next tick. Gobs with an
+     * attribute implementing GAttrib.ExactTick are always ticked every
+     * frame. */
+    public static final Config.Variable<Boolean> ticklod = Config.Variable.propb("haven.ticklod", true);
+    private static final double[] loddist = {MCache.tilesz.x * 30, MCache.tilesz.x * 60};
+    private static final int[] lodperiod = {1, 4, 16};
+    private final int[] lodcount = new int[lodperiod.length];
+
+    private Coord2d tickfocus() {
+	UI ui = glob.sess.ui;
+	GameUI gui = (ui == null) ? null : ui.gui;
+	if((gui == null) || (gui.map == null))
+	    return(null);
+	Gob pl = getgob(gui.map.plgob);
+	return((pl == null) ? null : pl.rc);
+    }
+
+    private static int lodtier(Gob g, Coord2d focus) {
+	if((focus == null) || (g.rc == null) || g.exacttick())
+	    return(0);
+	double d = g.rc.dist(focus);
+	int tier = 0;
+	while((tier < loddist.length) && (d > loddist[tier]))
+	    tier++;
+	return(tier);
+    }
+
+    public String tickstats() {
+	int nrefresh;
+	synchronized(this) {
+	    nrefresh = this.nrefresh;
+	}
+	synchronized(lodcount) {
+	    return(String.format("full %,d, 1/%d %,d, 1/%d %,d, refresh %,d", lodcount[0], lodperiod[1], lodcount[1], lodperiod[2], lodcount[2], nrefresh));
+	}
+    }
+
+    public void ctick(double dt) {
+	refreshstep();
+	Snapshot snap = snapshot(ctsnap);
+	Coord2d focus = ticklod.get() ? tickfocus() : null;
+	int[] tiers = new int[lodperiod.length];
+	if(ctrun.length < snap.n)
+	    ctrun = new Gob[snap.gobs.length];
+	Gob[] run = ctrun;
+	int nrun = 0;
+	for(int i = 0; i < snap.n; i++) {
+	    Gob g = snap.gobs[i];
+	    int tier = lodtier(g, focus);
+	    tiers[tier]++;
+	    g.lodacc += dt;
+	    g.lodwait = Math.min(g.lodwait, lodperiod[tier] - 1);
+	    if(g.lodwait > 0) {
+		g.lodwait--;
+		continue;
+	    }
+	    g.lodwait = lodperiod[tier] - 1;
+	    run[nrun++] = g;
+	}
+	synchronized(lodcount) {
+	    System.arraycopy(tiers, 0, lodcount, 0, tiers.length);
+	}
+	ctpass.plan(nrun);
+	ctpass.run(run, (c, gobs, from, to) -> {
+		for(int i = from; i < to; i++) {
+		    Gob g = gobs[i];
+		    synchronized(g) {
+			double gdt = g.lodacc;
+			g.lodacc = 0;
+			g.ctick(gdt);
+		    }
+		}
+	    });
+	Arrays.fill(run, 0, nrun, null);
 	paths.tick(dt);
 	if(glob.sess.ui != null && glob.sess.ui.gui != null && glob.sess.ui.gui.mapfile != null) {
 	    glob.sess.ui.gui.mapfile.updateGobMarkers();
@@ -192,35 +439,46 @@ public class OCache implements Iterable<Gob> {
     }
 
     public void gtick(Render g) {
-	ArrayList<Gob> copy = new ArrayList<Gob>();
-	synchronized(this) {
-	    for(Gob ob : this)
-		copy.add(ob);
-	}
-	if(!Config.par.get()) {
-	    copy.forEach(ob -> {
-		    synchronized(ob) {
-			ob.gtick(g);
+	Snapshot snap = snapshot(gtsnap);
+	int chunks = gtpass.plan(snap.n);
+	if(chunks <= 1) {
+	    gtpass.run(snap.gobs, (c, gobs, from, to) -> {
+		    for(int i = from; i < to; i++) {
+			Gob ob = gobs[i];
+			synchronized(ob) {
+			    ob.gtick(g);
+			}
 		    }
 		});
 	} else {
-	    Collection<Render> subs = new ArrayList<>();
-	    ThreadLocal<Render> subv = new ThreadLocal<>();
-	    copy.parallelStream().forEach(ob -> {
-		    Render sub = subv.get();
-		    if(sub == null) {
-			sub = g.env().render();
-			synchronized(subs) {
-			    subs.add(sub);
+	    /* Sub-renders are consumed by submission, so each chunk
+	     * records into one of its own, and they are submitted in
+	     * chunk order. */
+	    if(gtsubs.length < chunks)
+		gtsubs = new Render[chunks];
+	    Render[] subs = gtsubs;
+	    try {
+		gtpass.run(snap.gobs, (c, gobs, from, to) -> {
+			Render sub = subs[c] = g.env().render();
+			for(int i = from; i < to; i++) {
+			    Gob ob = gobs[i];
+			    synchronized(ob) {
+				ob.gtick(sub);
+			    }
 			}
-			subv.set(sub);
-		    }
-		    synchronized(ob) {
-			ob.gtick(sub);
+		    });
+		for(int i = 0; i < chunks; i++) {
+		    g.submit(subs[i]);
+		    subs[i] = null;
+		}
+	    } finally {
+		for(int i = 0; i < chunks; i++) {
+		    if(subs[i] != null) {
+			subs[i].dispose();
+			subs[i] = null;
 		    }
-		});
-	    for(Render sub : subs)
-		g.submit(sub);
+		}
+	    }
 	}
     }
 
@@ -237,6 +495,8 @@ public class OCache implements Iterable<Gob> {
 	synchronized(this) {
 	    cbs = new ArrayList<>(this.cbs);
 	    local.add(gob);
+	    for(Gob g : gob)
+		liveadd(g);
 	}
 	for(Gob g : gob) {
 	    synchronized(g) {
@@ -251,6 +511,8 @@ public class OCache implements Iterable<Gob> {
 	synchronized(this) {
 	    cbs = new ArrayList<>(this.cbs);
 	    local.remove(gob);
+	    for(Gob g : gob)
+		liverem(g);
 	}
 	for(Gob g : gob) {
 	    synchronized(g) {
@@ -417,17 +679,19 @@ public class OCache implements Iterable<Gob> {
     public class GobInfo {
 	public final long id;
 	public final LinkedList<AttrDelta> pending = new LinkedList<>();
-	public int frame;
+	public int frame, remgen;
 	public boolean nremoved, added, gremoved, virtual;
 	public Gob gob;
 	public Loader.Future<?> applier;
+	private boolean batched;
+	private double dirtyt;
 
 	public GobInfo(long id, int frame) {
 	    this.id = id;
 	    this.frame = frame;
 	}
 
-	private void apply() {
+	private void apply0() {
 	    main: {
 		synchronized(this) {
 		    if(nremoved && (!added || gremoved))
@@ -457,24 +721,48 @@ public class OCache implements Iterable<Gob> {
 			if((pending.poll()) != d)
 			    throw(new RuntimeException());
 		    }
+		    d.release();
 		}
 		if(!added) {
 		    add(gob);
 		    added = true;
 		}
 		gob.updated();
+		changed.fire();
 	    }
+	}
+
+	private void apply() {
+	    apply0();
 	    synchronized(this) {
 		applier = null;
 		checkdirty(false);
 	    }
 	}
 
+	private boolean idle() {
+	    return((applier == null) && !batched);
+	}
+
+	private boolean done() {
+	    return(nremoved && idle() && (!added || gremoved));
+	}
+
+	private void discard() {
+	    for(AttrDelta d : pending)
+		d.release();
+	    pending.clear();
+	}
+
 	public void checkdirty(boolean interrupt) {
 	    synchronized(this) {
-		if(applier == null) {
+		if(batched) {
+		    /* The queued batch will see the new state. */
+		} else if(applier == null) {
 		    if(nremoved ? (added && !gremoved) : (!added || !pending.isEmpty())) {
-			applier = glob.loader.defer(this::apply, null);
+			batched = true;
+			dirtyt = Utils.rtime();
+			enqueue(this);
 		    }
 		} else if(interrupt) {
 		    applier.restart();
@@ -483,7 +771,103 @@ public class OCache implements Iterable<Gob> {
 	}
     }
 
-    private final Map<Long, GobInfo> netinfo = new HashMap<>();
+    /* Dirty objects are applied in batches by a single loader task,
+     * so that a packet updating many objects costs one future rather
+     * than one each. An object whose deltas cannot be applied yet
+     * because of a Loading is handed off to its own future, so it
+     * does not hold up the rest of the batch. */
+    private final Queue<GobInfo> dirty = new ArrayDeque<>();
+    private Loader.Future<?> batcher = null;
+    private int maxdepth = 0;
+    private long nbatches = 0, nbatched = 0, nblocked = 0;
+    private double applylat = 0;
+
+    private void enqueue(GobInfo ng) {
+	synchronized(dirty) {
+	    dirty.add(ng);
+	    maxdepth = Math.max(maxdepth, dirty.size());
+	    if(batcher == null)
+		batcher = glob.loader.defer(this::applybatch, null);
+	}
+    }
+
+    private void applybatch() {
+	boolean ok = false;
+	try {
+	    synchronized(dirty) {
+		nbatches++;
+	    }
+	    while(true) {
+		GobInfo ng;
+		synchronized(dirty) {
+		    if((ng = dirty.poll()) == null) {
+			batcher = null;
+			ok = true;
+			return;
+		    }
+		}
+		try {
+		    ng.apply0();
+		} catch(Loading l) {
+		    synchronized(ng) {
+			ng.batched = false;
+			ng.applier = glob.loader.defer(ng::apply, null);
+		    }
+		    synchronized(dirty) {
+			nblocked++;
+		    }
+		    continue;
+		}
+		double lat = Utils.rtime() - ng.dirtyt;
+		synchronized(dirty) {
+		    nbatched++;
+		    applylat = (applylat * 0.99) + (lat * 0.01);
+		}
+		synchronized(ng) {
+		    ng.batched = false;
+		    ng.checkdirty(false);
+		}
+	    }
+	} finally {
+	    if(!ok) {
+		synchronized(dirty) {
+		    batcher = dirty.isEmpty() ? null : glob.loader.defer(this::applybatch, null);
+		}
+	    }
+	}
+    }
+
+    public String stats() {
+	synchronized(dirty) {
+	    return(String.format("dirty %d (%d), batches %,d, applied %,d, blocked %,d, lat %.1f ms",
+				 dirty.size(), maxdepth, nbatches, nbatched, nblocked, applylat * 1000));
+	}
+    }
+
+    private static final double NETSWEEP = 10.0;
+    private final LongMap<GobInfo> netinfo = new LongMap<>();
+    private int netgen = 0;
+    private double lastsweep = 0;
+
+    /* Removed objects are remembered for at least one full sweep
+     * generation, so that stale deltas for them are still rejected,
+     * and are forgotten after that. */
+    private void netsweep() {
+	double now = Utils.rtime();
+	if(now - lastsweep < NETSWEEP)
+	    return;
+	lastsweep = now;
+	netgen++;
+	for(Iterator<GobInfo> i = netinfo.values().iterator(); i.hasNext();) {
+	    GobInfo ng = i.next();
+	    synchronized(ng) {
+		if(ng.done() && (netgen - ng.remgen >= 2)) {
+		    ng.discard();
+		    i.remove();
+		}
+	    }
+	}
+    }
 
     private GobInfo netremove(long id, int frame) {
 	synchronized(netinfo) {
@@ -491,8 +875,8 @@ public class OCache implements Iterable<Gob> {
 	    if((ng == null) || (ng.frame > frame))
 		return(null);
 	    synchronized(ng) {
-		/* XXX: Clean up removed objects */
 		ng.nremoved = true;
+		ng.remgen = netgen;
 		ng.checkdirty(true);
 	    }
 	    return(ng);
@@ -506,6 +890,10 @@ public class OCache implements Iterable<Gob> {
 		if(ng.frame >= frame)
 		    return(null);
 		netinfo.remove(id);
+		synchronized(ng) {
+		    if(ng.idle())
+			ng.discard();
+		}
 		ng = null;
 	    }
 	    if(ng == null) {
@@ -542,6 +930,11 @@ public class OCache implements Iterable<Gob> {
 	    this.old = ((od.fl & 4) != 0);
 	}
 
+	public AttrDelta(ObjDelta od, int type, PMessage blob, int len) {
+	    super(type, blob, len);
+	    this.old = ((od.fl & 4) != 0);
+	}
+
 	public AttrDelta(AttrDelta from) {
 	    super(from);
 	    this.old = from.old;
@@ -550,9 +943,17 @@ public class OCache implements Iterable<Gob> {
 	public AttrDelta clone() {
 	    return(new AttrDelta(this));
 	}
+
+	public AttrDelta retain() {
+	    super.retain();
+	    return(this);
+	}
     }
 
     public GobInfo receive(ObjDelta delta) {
+	synchronized(netinfo) {
+	    netsweep();
+	}
 	if(delta.rem)
 	    return(netremove(delta.id, delta.frame - 1));
 	synchronized(netinfo) {
@@ -563,7 +964,8 @@ public class OCache implements Iterable<Gob> {
 		synchronized(ng) {
 		    ng.frame = delta.frame;
 		    ng.virtual = ((delta.fl & 2) != 0);
-		    ng.pending.addAll(delta.attrs);
+		    for(AttrDelta attr : delta.attrs)
+			ng.pending.add(attr.retain());
 		    ng.checkdirty(false);
 		}
 	    }
@@ -28,6 +28,8 @@ package haven;
 
 public class PMessage extends MessageBuf {
     public int type;
+    /* The pooled buffer that rbuf belongs to, if any. */
+    public transient BufPool.Buf pbuf;
 
     public PMessage(int type, byte[] blob, int off, int len) {
 	super(blob, off, len);
@@ -47,9 +49,41 @@ public class PMessage extends MessageBuf {
 	super(msg);
 	this.type = type;
     }
+    /* Copies of a pooled message get their own bytes, so that they
+     * can be kept after the original has been released. */
     public PMessage(PMessage msg) {
 	this(msg.type, msg);
     }
+    /* Constructs a view of the next len bytes of msg, sharing (and
+     * retaining) its pooled buffer rather than copying. */
+    public PMessage(int type, PMessage msg, int len) {
+	super(msg.rbuf, msg.view(len), len);
+	this.type = type;
+	if((this.pbuf = msg.pbuf) != null)
+	    pbuf.retain();
+    }
+
+    public PMessage retain() {
+	if(pbuf != null)
+	    pbuf.retain();
+	return(this);
+    }
+
+    public void release() {
+	if(pbuf != null)
+	    pbuf.release();
+    }
+
+    protected boolean pooled() {
+	return(pbuf != null);
+    }
+
+    /* A reader of the remaining bytes that shares the pooled buffer
+     * without a reference of its own, so it must only be used while
+     * this message is known to be held. */
+    public MessageBuf borrow() {
+	return(new MessageBuf(rbuf, rh, rt - rh));
+    }
 
     public PMessage clone() {
 	return(new PMessage(this));
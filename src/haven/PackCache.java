@@ -0,0 +1,482 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import static haven.Utils.pj;
+
+/* A resource cache keeping all entries in one append-only pack file,
+ * found through an open-addressed hash index that is mapped into
+ * memory, so that fetching takes no locks and opens no files.
+ *
+ * Writers, whether in this process or in another client, serialize
+ * on an OS lock on a separate lock file. A store appends its whole
+ * record first and then publishes it by writing its offset into the
+ * index, so readers see either the old entry or the new one. Since
+ * nothing is forced to disk, each record carries a checksum, and a
+ * record that fails it reads as a miss.
+ *
+ * Replaced entries are left in the pack as dead space. Once that
+ * outgrows the live data, the next store compacts the pack by
+ * copying the live records into a new generation of both files,
+ * pointing the current-file at it and flagging the old index as
+ * superseded, which is what tells other processes to switch. */
+public class PackCache implements ResCache {
+    public static final Config.Variable<Boolean> enabled = Config.Variable.propb("haven.packcache", true);
+    private static final int IMAGIC = 0x48504958, DMAGIC = 0x48504441, RMAGIC = 0x48505245;
+    private static final int H_MAGIC = 0, H_NSLOTS = 4, H_USED = 8, H_SUPER = 12, H_LIVE = 16, H_DEAD = 24, HSIZE = 64;
+    private static final int SLOTSZ = 16, RHSIZE = 16, DHSIZE = 8;
+    private static final int MINSLOTS = 1 << 14;
+    private static final long TOMB = -1;
+    private final Path dir;
+    public final URI id;
+    private final HashDirCache legacy;
+    private volatile State cur;
+
+    private class State {
+	final int gen, nslots;
+	final MappedByteBuffer idx;
+	volatile FileChannel data;
+
+	State(int gen) throws IOException {
+	    this.gen = gen;
+	    try(FileChannel fp = FileChannel.open(ipath(gen), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+		idx = fp.map(FileChannel.MapMode.READ_WRITE, 0, fp.size());
+	    }
+	    if(idx.getInt(H_MAGIC) != IMAGIC)
+		throw(new IOException("invalid pack index: " + ipath(gen)));
+	    nslots = idx.getInt(H_NSLOTS);
+	    if(idx.capacity() < HSIZE + ((long)nslots * SLOTSZ))
+		throw(new IOException("truncated pack index: " + ipath(gen)));
+	    data = FileChannel.open(dpath(gen), StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	boolean superseded() {
+	    return(idx.getInt(H_SUPER) != 0);
+	}
+
+	long slot(int sl) {
+	    return(HSIZE + ((long)sl * SLOTSZ));
+	}
+
+	void close() {
+	    try {
+		data.close();
+	    } catch(IOException e) {
+	    }
+	}
+    }
+
+    private PackCache(URI id, HashDirCache legacy) throws IOException {
+	this.id = id;
+	this.legacy = legacy;
+	this.dir = pj(HashDirCache.findbase(), String.format("pack-%016x", namehash(id.toString())));
+	Files.createDirectories(dir);
+	try(LockedFile lk = LockedFile.lock(pj(dir, "lock"))) {
+	    if(!Files.exists(pj(dir, "current")))
+		setgen(create(0, MINSLOTS));
+	    int gen = getgen();
+	    cleanup(gen);
+	    cur = new State(gen);
+	}
+    }
+
+    private static final Map<URI, PackCache> current = new HashMap<>();
+    public static PackCache get(URI id, HashDirCache legacy) throws IOException {
+	synchronized(current) {
+	    PackCache ret = current.get(id);
+	    if(ret == null)
+		current.put(id, ret = new PackCache(id, legacy));
+	    return(ret);
+	}
+    }
+
+    public static ResCache create() {
+	HashDirCache legacy = HashDirCache.create();
+	if((legacy == null) || !enabled.get())
+	    return(legacy);
+	try {
+	    return(get(legacy.id, legacy));
+	} catch(Exception e) {
+	    new Warning(e, "could not open pack cache, using per-file cache").issue();
+	    return(legacy);
+	}
+    }
+
+    private static long namehash(String name) {
+	long h = 0xcbf29ce484222325L;
+	for(int i = 0; i < name.length(); i++) {
+	    h ^= name.charAt(i);
+	    h *= 0x100000001b3L;
+	}
+	return((h == 0) ? 1 : h);
+    }
+
+    private Path ipath(int gen) {return(pj(dir, "index." + gen));}
+    private Path dpath(int gen) {return(pj(dir, "data." + gen));}
+
+    private int getgen() throws IOException {
+	return(Integer.parseInt(new String(Files.readAllBytes(pj(dir, "current")), StandardCharsets.US_ASCII).trim()));
+    }
+
+    private void setgen(int gen) throws IOException {
+	Path tmp = Files.createTempFile(dir, "current", ".new");
+	Files.write(tmp, Integer.toString(gen).getBytes(StandardCharsets.US_ASCII));
+	try {
+	    Files.move(tmp, pj(dir, "current"), StandardCopyOption.ATOMIC_MOVE);
+	} catch(AtomicMoveNotSupportedException e) {
+	    Files.move(tmp, pj(dir, "current"), StandardCopyOption.REPLACE_EXISTING);
+	}
+    }
+
+    /* Files of older generations that could not be deleted when they
+     * were superseded, typically because another process still had
+     * them open on a system that forbids that. */
+    private void cleanup(int gen) {
+	try(DirectoryStream<Path> ls = Files.newDirectoryStream(dir, p -> {
+		    String nm = p.getFileName().toString();
+		    return((nm.startsWith("index.") || nm.startsWith("data.")) &&
+			   !nm.endsWith("." + gen));
+		})) {
+	    for(Path p : ls) {
+		try {
+		    Files.deleteIfExists(p);
+		} catch(IOException e) {
+		}
+	    }
+	} catch(IOException e) {
+	}
+    }
+
+    private int create(int gen, int nslots) throws IOException {
+	Files.deleteIfExists(ipath(gen));
+	Files.deleteIfExists(dpath(gen));
+	try(FileChannel fp = FileChannel.open(dpath(gen), StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+	    ByteBuffer head = ByteBuffer.allocate(DHSIZE);
+	    head.putInt(DMAGIC).putInt(gen).flip();
+	    write(fp, head, 0);
+	}
+	try(FileChannel fp = FileChannel.open(ipath(gen), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+	    MappedByteBuffer idx = fp.map(FileChannel.MapMode.READ_WRITE, 0, HSIZE + ((long)nslots * SLOTSZ));
+	    idx.putInt(H_NSLOTS, nslots);
+	    idx.putInt(H_MAGIC, IMAGIC);
+	    idx.force();
+	}
+	return(gen);
+    }
+
+    private static void write(FileChannel fp, ByteBuffer buf, long off) throws IOException {
+	while(buf.hasRemaining())
+	    off += fp.write(buf, off);
+    }
+
+    private static void read(FileChannel fp, ByteBuffer buf, long off) throws IOException {
+	while(buf.hasRemaining()) {
+	    int rv = fp.read(buf, off);
+	    if(rv < 0)
+		throw(new EOFException());
+	    off += rv;
+	}
+    }
+
+    private State state() throws IOException {
+	State s = cur;
+	if(s.superseded())
+	    s = refresh(s);
+	return(s);
+    }
+
+    private State refresh(State s) throws IOException {
+	synchronized(this) {
+	    if(cur == s) {
+		cur = new State(getgen());
+		s.close();
+	    }
+	    return(cur);
+	}
+    }
+
+    private void reopen(State s, FileChannel ch) throws IOException {
+	synchronized(this) {
+	    if((cur == s) && (s.data == ch))
+		s.data = FileChannel.open(dpath(s.gen), StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+    }
+
+    private static class Record {
+	final String name;
+	final byte[] data;
+	final int size;
+
+	Record(String name, byte[] data) {
+	    this.name = name;
+	    this.data = data;
+	    this.size = RHSIZE + name.getBytes(StandardCharsets.UTF_8).length + data.length;
+	}
+    }
+
+    /* Returns null for anything that does not look like an intact
+     * record, rather than throwing. */
+    private static Record readrec(FileChannel fp, long off) throws IOException {
+	long sz = fp.size();
+	if(off + RHSIZE > sz)
+	    return(null);
+	ByteBuffer head = ByteBuffer.allocate(RHSIZE);
+	read(fp, head, off);
+	head.flip();
+	int magic = head.getInt(), nlen = head.getInt(), dlen = head.getInt(), crc = head.getInt();
+	if((magic != RMAGIC) || (nlen < 0) || (dlen < 0) || (off + RHSIZE + nlen + dlen > sz))
+	    return(null);
+	ByteBuffer body = ByteBuffer.allocate(nlen + dlen);
+	read(fp, body, off + RHSIZE);
+	CRC32 ck = new CRC32();
+	ck.update(body.array());
+	if((int)ck.getValue() != crc)
+	    return(null);
+	byte[] data = Arrays.copyOfRange(body.array(), nlen, nlen + dlen);
+	return(new Record(new String(body.array(), 0, nlen, StandardCharsets.UTF_8), data));
+    }
+
+    private static long writerec(FileChannel fp, String name, byte[] data) throws IOException {
+	byte[] nm = name.getBytes(StandardCharsets.UTF_8);
+	CRC32 ck = new CRC32();
+	ck.update(nm);
+	ck.update(data);
+	ByteBuffer buf = ByteBuffer.allocate(RHSIZE + nm.length + data.length);
+	buf.putInt(RMAGIC).putInt(nm.length).putInt(data.length).putInt((int)ck.getValue());
+	buf.put(nm).put(data).flip();
+	long off = fp.size();
+	write(fp, buf, off);
+	return(off);
+    }
+
+    /* Finds the slot holding name, or if there is none and creat is
+     * set, the empty slot it should go in. */
+    private int findslot(State s, FileChannel fp, String name, long h, boolean creat) throws IOException {
+	for(int i = 0, sl = (int)Long.remainderUnsigned(h, s.nslots); i < s.nslots; i++, sl = (sl + 1) % s.nslots) {
+	    long p = s.slot(sl);
+	    long off = s.idx.getLong((int)p + 8);
+	    if(off == 0)
+		return(creat ? sl : -1);
+	    if((off == TOMB) || (s.idx.getLong((int)p) != h))
+		continue;
+	    Record rec = readrec(fp, off);
+	    if((rec != null) && rec.name.equals(name))
+		return(sl);
+	}
+	return(-1);
+    }
+
+    private byte[] get(String name) throws IOException {
+	long h = namehash(name);
+	while(true) {
+	    State s = state();
+	    FileChannel fp = s.data;
+	    try {
+		for(int i = 0, sl = (int)Long.remainderUnsigned(h, s.nslots); i < s.nslots; i++, sl = (sl + 1) % s.nslots) {
+		    long p = s.slot(sl);
+		    long off = s.idx.getLong((int)p + 8);
+		    if(off == 0)
+			break;
+		    if((off == TOMB) || (s.idx.getLong((int)p) != h))
+			continue;
+		    Record rec = readrec(fp, off);
+		    if((rec != null) && rec.name.equals(name))
+			return(rec.data);
+		}
+		return(null);
+	    } catch(ClosedChannelException e) {
+		/* Either superseded under us, or closed by an
+		 * interrupt, which would otherwise break every other
+		 * reader too. */
+		reopen(s, fp);
+		if(e instanceof ClosedByInterruptException)
+		    throw(e);
+	    }
+	}
+    }
+
+    private void put(String name, byte[] data) throws IOException {
+	long h = namehash(name);
+	synchronized(this) {
+	    try(LockedFile lk = LockedFile.lock(pj(dir, "lock"))) {
+		State s = state();
+		long dead = s.idx.getLong(H_DEAD);
+		if(((s.idx.getInt(H_USED) + 1) * 10L > s.nslots * 7L) ||
+		   ((dead > s.idx.getLong(H_LIVE)) && (dead > (32 << 20))))
+		    s = compact(s);
+		FileChannel fp = s.data;
+		int sl = findslot(s, fp, name, h, true);
+		if(sl < 0)
+		    throw(new IOException("pack index full"));
+		int p = (int)s.slot(sl);
+		long prev = s.idx.getLong(p + 8);
+		long off = writerec(fp, name, data);
+		long size = new Record(name, data).size;
+		if(prev != 0) {
+		    Record old = readrec(fp, prev);
+		    s.idx.putLong(H_DEAD, s.idx.getLong(H_DEAD) + ((old == null) ? 0 : old.size));
+		    s.idx.putLong(H_LIVE, s.idx.getLong(H_LIVE) - ((old == null) ? 0 : old.size));
+		} else {
+		    s.idx.putLong(p, h);
+		    s.idx.putInt(H_USED, s.idx.getInt(H_USED) + 1);
+		}
+		s.idx.putLong(p + 8, off);
+		s.idx.putLong(H_LIVE, s.idx.getLong(H_LIVE) + size);
+	    }
+	}
+    }
+
+    public void remove(String name) throws IOException {
+	long h = namehash(name);
+	synchronized(this) {
+	    try(LockedFile lk = LockedFile.lock(pj(dir, "lock"))) {
+		State s = state();
+		int sl = findslot(s, s.data, name, h, false);
+		if(sl < 0)
+		    throw(new FileNotFoundException(name));
+		int p = (int)s.slot(sl);
+		Record old = readrec(s.data, s.idx.getLong(p + 8));
+		s.idx.putLong(p + 8, TOMB);
+		if(old != null) {
+		    s.idx.putLong(H_DEAD, s.idx.getLong(H_DEAD) + old.size);
+		    s.idx.putLong(H_LIVE, s.idx.getLong(H_LIVE) - old.size);
+		}
+	    }
+	}
+    }
+
+    /* Must be called with the writer lock held. */
+    private State compact(State s) throws IOException {
+	int live = 0;
+	for(int sl = 0; sl < s.nslots; sl++) {
+	    long off = s.idx.getLong((int)s.slot(sl) + 8);
+	    if((off != 0) && (off != TOMB))
+		live++;
+	}
+	int nslots = MINSLOTS;
+	while(nslots < live * 3)
+	    nslots <<= 1;
+	int ngen = create(s.gen + 1, nslots);
+	State n = new State(ngen);
+	try {
+	    long tot = 0;
+	    int used = 0;
+	    for(int sl = 0; sl < s.nslots; sl++) {
+		long p = s.slot(sl);
+		long off = s.idx.getLong((int)p + 8);
+		if((off == 0) || (off == TOMB))
+		    continue;
+		Record rec = readrec(s.data, off);
+		if(rec == null)
+		    continue;
+		long h = s.idx.getLong((int)p);
+		int nsl = findslot(n, n.data, rec.name, h, true);
+		int np = (int)n.slot(nsl);
+		n.idx.putLong(np, h);
+		n.idx.putLong(np + 8, writerec(n.data, rec.name, rec.data));
+		tot += rec.size;
+		used++;
+	    }
+	    n.idx.putInt(H_USED, used);
+	    n.idx.putLong(H_LIVE, tot);
+	    n.data.force(true);
+	    n.idx.force();
+	    setgen(ngen);
+	} catch(IOException | RuntimeException e) {
+	    n.close();
+	    throw(e);
+	}
+	s.idx.putInt(H_SUPER, 1);
+	synchronized(this) {
+	    cur = n;
+	}
+	s.close();
+	try {
+	    Files.deleteIfExists(ipath(s.gen));
+	    Files.deleteIfExists(dpath(s.gen));
+	} catch(IOException e) {
+	}
+	return(n);
+    }
+
+    public void compact() throws IOException {
+	synchronized(this) {
+	    try(LockedFile lk = LockedFile.lock(pj(dir, "lock"))) {
+		compact(state());
+	    }
+	}
+    }
+
+    public OutputStream store(String name) throws IOException {
+	return(new ByteArrayOutputStream() {
+		private boolean closed = false;
+
+		public void close() throws IOException {
+		    if(closed)
+			return;
+		    closed = true;
+		    put(name, toByteArray());
+		}
+	    });
+    }
+
+    public InputStream fetch(String name) throws IOException {
+	byte[] data = get(name);
+	if(data == null) {
+	    if(legacy == null)
+		throw(new FileNotFoundException(name));
+	    /* Entries from the older per-file cache are moved over
+	     * as they are used. */
+	    try(InputStream fp = legacy.fetch(name)) {
+		data = Utils.readall(fp);
+	    }
+	    try {
+		put(name, data);
+	    } catch(IOException e) {
+		new Warning(e, "could not migrate cache entry " + name).issue();
+		return(new ByteArrayInputStream(data));
+	    }
+	    try {
+		legacy.remove(name);
+	    } catch(IOException e) {
+	    }
+	}
+	return(new ByteArrayInputStream(data));
+    }
+
+    public String toString() {
+	return("PackCache(" + id + ")");
+    }
+}
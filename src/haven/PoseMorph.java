@@ -199,12 +199,44 @@ public class PoseMorph {
 	    super(vba, apv, data);
 	    this.names = names;
 	}
+
+	static {
+	    VertexBuf.snapshot(BoneData.class, new VertexBuf.Snapshot<BoneData>() {
+		    public void save(BoneData data, Message out) {
+			out.adduint8(data.elfmt.nc).adduint16(data.names.length);
+			for(String nm : data.names)
+			    out.addstring(nm);
+			ResSnapshot.addints(out, data.data);
+		    }
+
+		    public BoneData load(Message in) {
+			int apv = in.uint8();
+			String[] names = new String[in.uint16()];
+			for(int i = 0; i < names.length; i++)
+			    names[i] = in.string();
+			return(new BoneData(apv, ResSnapshot.ints(in), names));
+		    }
+		});
+	}
     }
 
     public static class WeightData extends VertexBuf.FloatData {
 	public WeightData(int apv, FloatBuffer data) {
 	    super(vbw, apv, data);
 	}
+
+	static {
+	    VertexBuf.snapshot(WeightData.class, new VertexBuf.Snapshot<WeightData>() {
+		    public void save(WeightData data, Message out) {
+			out.adduint8(data.elfmt.nc);
+			ResSnapshot.addfloats(out, data.data);
+		    }
+
+		    public WeightData load(Message in) {
+			return(new WeightData(in.uint8(), ResSnapshot.floats(in)));
+		    }
+		});
+	}
     }
 
     private static void read(Collection<VertexBuf.AttribData> dst, Message buf, int nv, int mba, NumberFormat fmt) {
@@ -564,7 +564,7 @@ public class QuestWnd extends Widget {
 		super(sz);
 		this.q = q;
 		this.nm = new IconText(sz) {
-			protected BufferedImage img() {return(q.res.get().flayer(Resource.imgc).img);}
+			protected BufferedImage img() {return(q.res.get().flayer(Resource.imgc).img());}
 			protected String text() {return(q.title());}
 
 			protected void drawtext(GOut g) {
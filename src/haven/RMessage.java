@@ -61,4 +61,12 @@ public class RMessage extends PMessage {
     public RMessage(PMessage msg) {
 	super(msg);
     }
+    public RMessage(int type, PMessage msg, int len) {
+	super(type, msg, len);
+    }
+
+    public RMessage retain() {
+	super.retain();
+	return(this);
+    }
 }
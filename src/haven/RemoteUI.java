@@ -29,11 +29,22 @@ package haven;
 import java.util.*;
 
 public class RemoteUI implements UI.Receiver, UI.Runner {
+    /* Comma-separated widget message names whose later instances
+     * fully supersede earlier ones to the same widget, so that all
+     * but the last of a run of them in one batch can be dropped. */
+    public static final Config.Variable<String> coalesce = Config.Variable.prop("haven.uicoalesce", "");
     public final Session sess;
+    private final Collection<String> cnames;
 
     public RemoteUI(Session sess) {
 	this.sess = sess;
 	Widget.initnames();
+	Collection<String> cnames = new HashSet<>();
+	for(String nm : coalesce.get().split(",")) {
+	    if(!(nm = nm.trim()).equals(""))
+		cnames.add(nm);
+	}
+	this.cnames = cnames;
     }
 
     public void rcvmsg(int id, String name, Object... args) {
@@ -57,59 +68,110 @@ public class RemoteUI implements UI.Receiver, UI.Runner {
 	this.sess.postuimsg(new Return(sess));
     }
 
+    protected void dispatch(UI ui, PMessage msg) throws InterruptedException {
+	if(msg.type == RMessage.RMSG_NEWWDG) {
+	    int id = msg.int32();
+	    String type = msg.string();
+	    int parent = msg.int32();
+	    Object[] pargs = msg.list();
+	    Object[] cargs = msg.list();
+	    ui.newwidgetp(id, type, parent, pargs, cargs);
+	} else if(msg.type == RMessage.RMSG_WDGMSG) {
+	    int id = msg.int32();
+	    String name = msg.string();
+	    ui.uimsg(id, name, msg);
+	} else if(msg.type == RMessage.RMSG_DSTWDG) {
+	    int id = msg.int32();
+	    ui.destroy(id);
+	} else if(msg.type == RMessage.RMSG_ADDWDG) {
+	    int id = msg.int32();
+	    int parent = msg.int32();
+	    Object[] pargs = msg.list();
+	    ui.addwidget(id, parent, pargs);
+	} else if(msg.type == RMessage.RMSG_WDGBAR) {
+	    Collection<Integer> deps = new ArrayList<>();
+	    while(!msg.eom()) {
+		int dep = msg.int32();
+		if(dep == -1)
+		    break;
+		deps.add(dep);
+	    }
+	    Collection<Integer> bars = deps;
+	    if(!msg.eom()) {
+		bars = new ArrayList<>();
+		while(!msg.eom()) {
+		    int bar = msg.int32();
+		    if(bar == -1)
+			break;
+		    bars.add(bar);
+		}
+	    }
+	    ui.wdgbarrier(deps, bars);
+	}
+    }
+
+    /* Drops widget messages superseded by a later message of the same
+     * name to the same widget. Any other kind of message, or another
+     * message to the same widget whose name is not coalescable, acts
+     * as a barrier. */
+    private int coalesce(List<PMessage> batch) {
+	Map<Integer, Collection<String>> later = new HashMap<>();
+	int n = 0;
+	for(ListIterator<PMessage> i = batch.listIterator(batch.size()); i.hasPrevious();) {
+	    PMessage msg = i.previous();
+	    if(msg.type != RMessage.RMSG_WDGMSG) {
+		later.clear();
+		continue;
+	    }
+	    MessageBuf peek = msg.borrow();
+	    int id = peek.int32();
+	    String name = peek.string();
+	    if(!cnames.contains(name)) {
+		later.remove(id);
+	    } else if(!later.computeIfAbsent(id, k -> new HashSet<>()).add(name)) {
+		i.remove();
+		msg.release();
+		n++;
+	    }
+	}
+	return(n);
+    }
+
     public UI.Runner run(UI ui) throws InterruptedException {
+	List<PMessage> batch = new ArrayList<>();
 	try {
 	    ui.setreceiver(this);
-	    while(true) {
-		PMessage msg = sess.getuimsg();
-		if(msg == null) {
-		    return(null);
-		} else if(msg instanceof Return) {
-		    sess.close();
-		    return(new RemoteUI(((Return)msg).ret));
-		} else if(msg.type == RMessage.RMSG_NEWWDG) {
-		    int id = msg.int32();
-		    String type = msg.string();
-		    int parent = msg.int32();
-		    Object[] pargs = msg.list();
-		    Object[] cargs = msg.list();
-		    ui.newwidgetp(id, type, parent, pargs, cargs);
-		} else if(msg.type == RMessage.RMSG_WDGMSG) {
-		    int id = msg.int32();
-		    String name = msg.string();
-		    ui.uimsg(id, name, msg.list());
-		} else if(msg.type == RMessage.RMSG_DSTWDG) {
-		    int id = msg.int32();
-		    ui.destroy(id);
-		} else if(msg.type == RMessage.RMSG_ADDWDG) {
-		    int id = msg.int32();
-		    int parent = msg.int32();
-		    Object[] pargs = msg.list();
-		    ui.addwidget(id, parent, pargs);
-		} else if(msg.type == RMessage.RMSG_WDGBAR) {
-		    Collection<Integer> deps = new ArrayList<>();
-		    while(!msg.eom()) {
-			int dep = msg.int32();
-			if(dep == -1)
-			    break;
-			deps.add(dep);
-		    }
-		    Collection<Integer> bars = deps;
-		    if(!msg.eom()) {
-			bars = new ArrayList<>();
-			while(!msg.eom()) {
-			    int bar = msg.int32();
-			    if(bar == -1)
-				break;
-			    bars.add(bar);
+	    while(sess.getuimsgs(batch)) {
+		int dropped = cnames.isEmpty() ? 0 : coalesce(batch);
+		try {
+		    for(int i = 0; i < batch.size(); i++) {
+			PMessage msg = batch.get(i);
+			batch.set(i, null);
+			try {
+			    if(msg instanceof Return) {
+				sess.close();
+				return(new RemoteUI(((Return)msg).ret));
+			    }
+			    dispatch(ui, msg);
+			} finally {
+			    msg.release();
 			}
 		    }
-		    ui.wdgbarrier(deps, bars);
+		} finally {
+		    for(PMessage msg : batch) {
+			if(msg != null)
+			    msg.release();
+		    }
+		    batch.clear();
 		}
+		sess.uidispatched(dropped);
 	    }
+	    return(null);
 	} finally {
 	    sess.close();
-	    while(sess.getuimsg() != null);
+	    PMessage msg;
+	    while((msg = sess.getuimsg()) != null)
+		msg.release();
 	}
     }
 
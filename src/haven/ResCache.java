@@ -37,7 +37,7 @@ public interface ResCache {
     
     public static class StupidJavaCodeContainer {
 	private static ResCache makeglobal() {
-	    return(HashDirCache.create());
+	    return(PackCache.create());
 	}
     }
 
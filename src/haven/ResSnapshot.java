@@ -0,0 +1,188 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.util.zip.CRC32;
+
+/* An optional store of resource layers in an already decoded form,
+ * for layer types whose decoding does real work beyond reading their
+ * bytes. Entries are keyed by resource name, version and layer
+ * index, and carry a checksum of the layer's original bytes, so that
+ * anything not matching exactly is simply decoded the normal way and
+ * the entry rewritten. */
+public class ResSnapshot {
+    public static final Config.Variable<Boolean> enabled = Config.Variable.propb("haven.ressnap", false);
+    private static final int FORMAT = 1;
+    private static final Map<String, Codec<?>> codecs = new HashMap<>();
+    private static ResCache store = null;
+    private static boolean broken = false;
+
+    public interface Codec<L extends Resource.Layer> {
+	/* Called on a freshly constructed layer, before its init().
+	 * Returns false if the layer has no form that can be saved. */
+	public boolean save(L layer, Message out);
+	public L load(Resource res, Message in);
+    }
+
+    public static <L extends Resource.Layer> void register(String lname, Codec<L> codec) {
+	synchronized(codecs) {
+	    codecs.put(lname, codec);
+	}
+    }
+
+    static {
+	register("mesh", FastMesh.MeshRes.snapshot);
+	register("vbuf2", VertexBuf.VertexRes.snapshot);
+	register("skel", Skeleton.Res.snapshot);
+	register("tileset2", Tileset.snapshot);
+    }
+
+    private static Codec<?> codec(String lname) {
+	if(!enabled.get())
+	    return(null);
+	synchronized(codecs) {
+	    return(codecs.get(lname));
+	}
+    }
+
+    public static boolean handles(String lname) {
+	return(codec(lname) != null);
+    }
+
+    private static ResCache store() {
+	synchronized(ResSnapshot.class) {
+	    if((store == null) && !broken) {
+		try {
+		    store = PackCache.get(Utils.uri("urn:haven-snapshot:" + FORMAT), null);
+		} catch(Exception e) {
+		    new Warning(e, "could not open resource snapshot store").issue();
+		    broken = true;
+		}
+	    }
+	    return(store);
+	}
+    }
+
+    public static void addfloats(Message out, FloatBuffer data) {
+	ByteBuffer buf = ByteBuffer.allocate(data.capacity() * 4).order(ByteOrder.LITTLE_ENDIAN);
+	FloatBuffer src = data.duplicate();
+	((Buffer)src).clear();
+	buf.asFloatBuffer().put(src);
+	out.addint32(data.capacity()).addbytes(buf.array());
+    }
+
+    public static FloatBuffer floats(Message in) {
+	int n = in.int32();
+	FloatBuffer ret = Utils.wfbuf(n);
+	ret.put(ByteBuffer.wrap(in.bytes(n * 4)).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+	((Buffer)ret).rewind();
+	return(ret);
+    }
+
+    public static void addints(Message out, IntBuffer data) {
+	ByteBuffer buf = ByteBuffer.allocate(data.capacity() * 4).order(ByteOrder.LITTLE_ENDIAN);
+	IntBuffer src = data.duplicate();
+	((Buffer)src).clear();
+	buf.asIntBuffer().put(src);
+	out.addint32(data.capacity()).addbytes(buf.array());
+    }
+
+    public static IntBuffer ints(Message in) {
+	int n = in.int32();
+	IntBuffer ret = Utils.wibuf(n);
+	ret.put(ByteBuffer.wrap(in.bytes(n * 4)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+	((Buffer)ret).rewind();
+	return(ret);
+    }
+
+    private static int crc(byte[] data) {
+	CRC32 ck = new CRC32();
+	ck.update(data);
+	return((int)ck.getValue());
+    }
+
+    private static String key(Resource res, int lidx) {
+	return(String.format("%s@%d#%d", res.name, res.ver, lidx));
+    }
+
+    private static <L extends Resource.Layer> L load(Resource res, Codec<L> codec, String key, byte[] raw) {
+	ResCache store = store();
+	if(store == null)
+	    return(null);
+	byte[] data;
+	try(InputStream fp = store.fetch(key)) {
+	    data = Utils.readall(fp);
+	} catch(IOException e) {
+	    return(null);
+	}
+	try {
+	    Message in = new MessageBuf(data);
+	    if((in.int32() != FORMAT) || (in.int32() != crc(raw)) || (in.int32() != raw.length))
+		return(null);
+	    return(codec.load(res, in));
+	} catch(RuntimeException e) {
+	    return(null);
+	}
+    }
+
+    private static <L extends Resource.Layer> void save(Codec<L> codec, String key, byte[] raw, Resource.Layer layer) {
+	ResCache store = store();
+	if(store == null)
+	    return;
+	try {
+	    MessageBuf out = new MessageBuf();
+	    out.addint32(FORMAT).addint32(crc(raw)).addint32(raw.length);
+	    @SuppressWarnings("unchecked") L l = (L)layer;
+	    if(!codec.save(l, out))
+		return;
+	    try(OutputStream fp = store.store(key)) {
+		fp.write(out.fin());
+	    }
+	} catch(IOException | RuntimeException e) {
+	    new Warning(e, "could not save resource snapshot " + key).issue();
+	}
+    }
+
+    /* Constructs the layer with index lidx of res from its raw bytes,
+     * going through the snapshot store if there is a codec for it. */
+    public static Resource.Layer cons(Resource res, String lname, int lidx, byte[] raw, Resource.LayerFactory<?> cons) {
+	Codec<?> codec = codec(lname);
+	if(codec == null)
+	    return(cons.cons(res, new MessageBuf(raw)));
+	String key = key(res, lidx);
+	Resource.Layer ret = load(res, codec, key, raw);
+	if(ret != null)
+	    return(ret);
+	ret = cons.cons(res, new MessageBuf(raw));
+	if(ret != null)
+	    save(codec, key, raw, ret);
+	return(ret);
+    }
+}
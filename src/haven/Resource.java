@@ -34,6 +34,7 @@ import java.lang.annotation.*;
 import java.util.*;
 import java.util.function.*;
 import java.util.regex.*;
+import java.lang.ref.*;
 import java.net.*;
 import java.io.*;
 import java.nio.file.*;
@@ -588,6 +589,12 @@ public class Resource implements Serializable {
 		return(res);
 	    }
 
+	    public Resource tryGet() {
+		if(!done)
+		    return(null);
+		return(get());
+	    }
+
 	    private void done() {
 		synchronized(this) {
 		    done = true;
@@ -896,6 +903,10 @@ public class Resource implements Serializable {
 	    synchronized(Resource.class) {
 		if(_remote == null) {
 		    Pool remote = new Pool(local()/*, new CustomizedJarSource("customized-remote")*/);
+		    /* Remote loaders mostly sit waiting on the network, so
+		     * run as many as there are pooled HTTP connections; they
+		     * still take resources off the queue by priority. */
+		    remote.nloaders = Math.max(Http.maxconns.get(), 1);
 		    if(prscache != null)
 			remote.add(new CacheSource(prscache));
 		    _remote = remote;;
@@ -1008,6 +1019,100 @@ public class Resource implements Serializable {
 	}
     }
 
+    /* How a layer type is decoded when its resource is loaded. Lazy
+     * layers keep their encoded bytes and are decoded the first time
+     * anything asks for their class, after which the encoded bytes
+     * are dropped. Discardable layers are decoded the same way but
+     * only held softly, and decoded again if needed after being
+     * collected. Since their encoded bytes are kept throughout, that
+     * only pays for layers whose decoded form is much larger and is
+     * needed just long enough to upload it, and which are not relied
+     * on for identity; no layer type is discardable by default. Only
+     * layers constructed by a plain LayerConstructor can be deferred,
+     * since their class is needed up front. */
+    public static enum LayerPolicy {
+	EAGER, LAZY, DISCARD
+    }
+
+    public static final Config.Variable<Boolean> lazylayers = Config.Variable.propb("haven.lazylayers", true);
+    private static final Map<String, LayerPolicy> lpolicy = new HashMap<>();
+    static {
+	layerpolicy("image", LayerPolicy.LAZY);
+	layerpolicy("vbuf2", LayerPolicy.LAZY);
+	layerpolicy("mesh", LayerPolicy.LAZY);
+	layerpolicy("audio2", LayerPolicy.LAZY);
+	layerpolicy("midi", LayerPolicy.LAZY);
+    }
+
+    public static void layerpolicy(String name, LayerPolicy policy) {
+	synchronized(lpolicy) {
+	    lpolicy.put(name, policy);
+	}
+    }
+
+    private static LayerPolicy layerpolicy(String name, LayerFactory<?> cons) {
+	if(!(cons instanceof LayerConstructor) || !lazylayers.get())
+	    return(LayerPolicy.EAGER);
+	synchronized(lpolicy) {
+	    return(lpolicy.getOrDefault(name, LayerPolicy.EAGER));
+	}
+    }
+
+    private class Pending extends Layer {
+	final transient LayerFactory<?> cons;
+	final Class<?> cl;
+	final String lname;
+	final int lidx;
+	final boolean soft;
+	private byte[] enc;
+	private transient Layer val;
+	private transient Reference<Layer> sval;
+	private transient RuntimeException err;
+	private transient boolean nil;
+
+	Pending(LayerFactory<?> cons, Class<?> cl, String lname, int lidx, byte[] enc, boolean soft) {
+	    this.cons = cons;
+	    this.cl = cl;
+	    this.lname = lname;
+	    this.lidx = lidx;
+	    this.enc = enc;
+	    this.soft = soft;
+	}
+
+	public void init() {}
+
+	synchronized Layer get() {
+	    if(err != null)
+		throw(err);
+	    if(nil)
+		return(null);
+	    Layer ret = soft ? ((sval == null) ? null : sval.get()) : val;
+	    if(ret != null)
+		return(ret);
+	    try {
+		ret = ResSnapshot.cons(Resource.this, lname, lidx, enc, cons);
+		if(ret != null)
+		    ret.init();
+	    } catch(Loading l) {
+		throw(l);
+	    } catch(RuntimeException e) {
+		err = e;
+		enc = null;
+		throw(e);
+	    }
+	    if(ret == null) {
+		nil = true;
+		enc = null;
+	    } else if(soft) {
+		sval = new SoftReference<>(ret);
+	    } else {
+		val = ret;
+		enc = null;
+	    }
+	    return(ret);
+	}
+    }
+
     public static void addltype(String name, LayerFactory<?> cons) {
 	if(ltypes.put(name, cons) != null)
 	   Warning.warn("duplicated layer name: " + name);
@@ -1056,10 +1161,53 @@ public class Resource implements Serializable {
 	return(ret);
     }
 
+    /* Decoded and UI-scaled pixels of images are only needed until
+     * their textures are uploaded, and can always be made again from
+     * the encoded data, so they are kept in a bounded LRU rather than
+     * by the layers themselves. Decoded images are keyed by their
+     * encoded bytes, and scaled ones by their layer. */
+    public static final Config.Variable<Integer> scaledcache = Config.Variable.propi("haven.scaledcache", 64);
+    private static final Map<Object, BufferedImage> scaledimgs = new LinkedHashMap<>(16, 0.75f, true);
+    private static long scaledsz = 0;
+
+    private static long imgbytes(BufferedImage img) {
+	return((long)img.getWidth() * img.getHeight() * 4);
+    }
+
+    private static BufferedImage getscaled(Object img) {
+	synchronized(scaledimgs) {
+	    return(scaledimgs.get(img));
+	}
+    }
+
+    private static void putscaled(Object img, BufferedImage scaled) {
+	long max = scaledcache.get() * (1L << 20);
+	synchronized(scaledimgs) {
+	    BufferedImage prev = scaledimgs.put(img, scaled);
+	    if(prev != null)
+		scaledsz -= imgbytes(prev);
+	    scaledsz += imgbytes(scaled);
+	    for(Iterator<BufferedImage> i = scaledimgs.values().iterator(); (scaledsz > max) && i.hasNext();) {
+		scaledsz -= imgbytes(i.next());
+		i.remove();
+	    }
+	}
+    }
+
+    private static void dropscaled(Object img) {
+	synchronized(scaledimgs) {
+	    BufferedImage prev = scaledimgs.remove(img);
+	    if(prev != null)
+		scaledsz -= imgbytes(prev);
+	}
+    }
+
     @LayerName("image")
     public class Image extends Layer implements IDLayer<Integer> {
+	/* Only set once img() has been called, which init() does for
+	 * resources with code that may read it directly. */
 	public transient BufferedImage img;
-	private transient BufferedImage scaled;
+	private final byte[] enc;
 	private transient Tex tex, rawtex;
 	public final int z, subz;
 	public final boolean nooff;
@@ -1077,7 +1225,6 @@ public class Resource implements Serializable {
 	    id = buf.int16();
 	    o = cdec(buf);
 	    so = UI.scale(o);
-	    boolean hasscale = false;
 	    Map<String, byte[]> kvdata = new HashMap<>();
 	    if((fl & 4) != 0) {
 		while(true) {
@@ -1093,19 +1240,14 @@ public class Resource implements Serializable {
 			tsz = val.coord();
 		    } else if(key.equals("scale")) {
 			scale = val.float32();
-			hasscale = true;
 		    } else {
 			kvdata.put(key, data);
 		    }
 		}
 	    }
 	    this.kvdata = kvdata.isEmpty() ? Collections.emptyMap() : kvdata;
-	    try {
-		img = readimage(new MessageInputStream(buf));
-	    } catch(IOException e) {
-		throw(new LoadException(e, Resource.this));
-	    }
-	    sz = Utils.imgsz(img);
+	    enc = buf.bytes();
+	    sz = imgsz();
 	    if(tsz == null)
 		tsz = sz;
 	    ssz = new Coord(Math.round(UI.scale(sz.x / scale)), Math.round(UI.scale(sz.y / scale)));
@@ -1116,20 +1258,80 @@ public class Resource implements Serializable {
 		 * area. */
 		so = new Coord(Math.min(so.x, tsz.x - ssz.x), Math.min(so.y, sz.y - ssz.y));
 	    }
-	    scaled = PUtils.uiscale(img, ssz);
-	    if(false && !hasscale)
-		scaled = PUtils.monochromize(PUtils.coercergba(scaled), java.awt.Color.RED);
+	}
+
+	private BufferedImage decode() {
+	    try {
+		return(readimage(new ByteArrayInputStream(enc)));
+	    } catch(IOException e) {
+		throw(new LoadException(e, Resource.this));
+	    }
+	}
+
+	/* Reads only the image header where possible, so that the
+	 * pixels need not be decoded until they are used. */
+	private Coord imgsz() {
+	    try(javax.imageio.stream.ImageInputStream fp = ImageIO.createImageInputStream(new ByteArrayInputStream(enc))) {
+		Iterator<ImageReader> rds = ImageIO.getImageReaders(fp);
+		if(rds.hasNext()) {
+		    ImageReader rd = rds.next();
+		    try {
+			rd.setInput(fp, true, true);
+			return(Coord.of(rd.getWidth(0), rd.getHeight(0)));
+		    } finally {
+			rd.dispose();
+		    }
+		}
+	    } catch(IOException e) {
+	    }
+	    return(Utils.imgsz(pixels()));
+	}
+
+	public BufferedImage img() {
+	    if(img == null) {
+		synchronized(this) {
+		    if(img == null)
+			img = pixels();
+		}
+	    }
+	    return(img);
+	}
+
+	private BufferedImage pixels() {
+	    BufferedImage ret = img;
+	    if(ret != null)
+		return(ret);
+	    if((ret = getscaled(enc)) == null)
+		putscaled(enc, ret = decode());
+	    return(ret);
+	}
+
+	private BufferedImage rescale() {
+	    BufferedImage ret = getscaled(this);
+	    if(ret == null) {
+		BufferedImage img = pixels();
+		ret = PUtils.uiscale(img, ssz);
+		if(ret != img)
+		    putscaled(this, ret);
+	    }
+	    return(ret);
 	}
 
 	public BufferedImage scaled() {
-	    return(scaled);
+	    Tex tex = this.tex;
+	    if(tex instanceof TexI) {
+		BufferedImage ret = ((TexI)tex).held();
+		if(ret != null)
+		    return(ret);
+	    }
+	    return(rescale());
 	}
 
 	public Tex rawtex() {
 	    if(rawtex == null) {
 		synchronized(this) {
 		    if(rawtex == null) {
-			rawtex = new TexI(img) {
+			rawtex = new TexI(pixels(), this::pixels) {
 				public String toString() {
 				    return("TexI(" + Resource.this.name + ", " + id + ")");
 				}
@@ -1144,11 +1346,15 @@ public class Resource implements Serializable {
 	    if(tex == null) {
 		synchronized(this) {
 		    if(tex == null) {
-			tex = new TexI(scaled()) {
+			/* The texture holds its image only until it is
+			 * uploaded, and asks for it again if it has to
+			 * be remade. */
+			tex = new TexI(rescale(), this::rescale) {
 				public String toString() {
 				    return("TexI(" + Resource.this.name + ", " + id + ")");
 				}
 			    };
+			dropscaled(this);
 		    }
 		}
 	    }
@@ -1159,7 +1365,14 @@ public class Resource implements Serializable {
 	    return(id);
 	}
 		
-	public void init() {}
+	public void init() {
+	    for(Layer l : layers) {
+		if((l instanceof Code) || ((l instanceof Pending) && (((Pending)l).cl == Code.class))) {
+		    img();
+		    break;
+		}
+	    }
+	}
     }
 
     @LayerName("tooltip")
@@ -1832,11 +2045,45 @@ public class Resource implements Serializable {
 	}
     }
 
+    /* Iterates the layers of a class in file order, decoding any
+     * deferred ones of that class on the way. */
+    private <L> Iterator<L> iterate(Class<L> cl) {
+	Iterator<Layer> src = layers.iterator();
+	return(new Iterator<L>() {
+		L next = null;
+
+		public boolean hasNext() {
+		    while(next == null) {
+			if(!src.hasNext())
+			    return(false);
+			Layer l = src.next();
+			if(l instanceof Pending) {
+			    Pending p = (Pending)l;
+			    if(!cl.isAssignableFrom(p.cl))
+				continue;
+			    l = p.get();
+			}
+			if(cl.isInstance(l))
+			    next = cl.cast(l);
+		    }
+		    return(true);
+		}
+
+		public L next() {
+		    if(!hasNext())
+			throw(new NoSuchElementException());
+		    L ret = next;
+		    next = null;
+		    return(ret);
+		}
+	    });
+    }
+
     public <L extends Layer> Collection<L> layers(final Class<L> cl) {
 	used = true;
 	return(new DefaultCollection<L>() {
 		public Iterator<L> iterator() {
-		    return(Utils.filter(layers.iterator(), cl));
+		    return(iterate(cl));
 		}
 	    });
     }
@@ -1849,11 +2096,8 @@ public class Resource implements Serializable {
 
     public <L extends Layer> L layer(Class<L> cl) {
 	used = true;
-	for(Layer l : layers) {
-	    if(cl.isInstance(l))
-		return(cl.cast(l));
-	}
-	return(null);
+	Iterator<L> i = iterate(cl);
+	return(i.hasNext() ? i.next() : null);
     }
     public <L extends Layer> L flayer(Class<L> cl) {
 	L l = layer(cl);
@@ -1868,19 +2112,17 @@ public class Resource implements Serializable {
 	Predicate<? super L> dsel = sel;
 	return(new DefaultCollection<L>() {
 		public Iterator<L> iterator() {
-		    return(Utils.filter(Utils.filter(layers.iterator(), cl), dsel));
+		    return(Utils.filter(iterate(cl), dsel));
 		}
 	    });
     }
 
     public <L> L layer(Class<L> cl, Predicate<? super L> sel) {
 	used = true;
-	for(Layer l : layers) {
-	    if(cl.isInstance(l)) {
-		L lc = cl.cast(l);
-		if((sel == null) || sel.test(lc))
-		    return(lc);
-	    }
+	for(Iterator<L> i = iterate(cl); i.hasNext();) {
+	    L lc = i.next();
+	    if((sel == null) || sel.test(lc))
+		return(lc);
 	}
 	return(null);
     }
@@ -1890,12 +2132,10 @@ public class Resource implements Serializable {
 	    return null;
 	}
 	used = true;
-	for(Layer l : layers) {
-	    if(cl.isInstance(l)) {
-		L ll = cl.cast(l);
-		if(ll.layerid().equals(id))
-		    return(ll);
-	    }
+	for(Iterator<L> i = iterate(cl); i.hasNext();) {
+	    L ll = i.next();
+	    if(ll.layerid().equals(id))
+		return(ll);
 	}
 	return(null);
     }
@@ -1922,18 +2162,29 @@ public class Resource implements Serializable {
 	    this.ver = ver;
 	else if(ver != this.ver)
 	    throw(new LoadException("Wrong res version (" + ver + " != " + this.ver + ")", this));
-	while(!in.eom()) {
-	    LayerFactory<?> lc = ltypes.get(in.string());
+	for(int lidx = 0; !in.eom(); lidx++) {
+	    String nm = in.string();
+	    LayerFactory<?> lc = ltypes.get(nm);
 	    int len = in.int32();
 	    if(lc == null) {
 		in.skip(len);
 		continue;
 	    }
-	    Message buf = new LimitMessage(in, len);
-	    Layer l = lc.cons(this, buf);
+	    LayerPolicy pol = layerpolicy(nm, lc);
+	    if(pol != LayerPolicy.EAGER) {
+		layers.add(new Pending(lc, ((LayerConstructor<?>)lc).cl, nm, lidx, in.bytes(len), pol == LayerPolicy.DISCARD));
+		continue;
+	    }
+	    Layer l;
+	    if(ResSnapshot.handles(nm)) {
+		l = ResSnapshot.cons(this, nm, lidx, in.bytes(len), lc);
+	    } else {
+		Message buf = new LimitMessage(in, len);
+		l = lc.cons(this, buf);
+		buf.skip();
+	    }
 	    if(l != null)
 		layers.add(l);
-	    buf.skip();
 	}
 	this.layers = layers;
 	for(Layer l : layers)
@@ -1965,7 +2216,7 @@ public class Resource implements Serializable {
     }
 
     public static BufferedImage loadimg(String name) {
-	return(loadrimg(name).img);
+	return(loadrimg(name).img());
     }
 
     public static BufferedImage loadsimg(String name) {
@@ -112,7 +112,7 @@ public class RichText extends Text {
 	public Image(Resource res, int id) {
 	    for(Resource.Image img : res.layers(Resource.imgc)) {
 		if(img.id == id) {
-		    this.img = img.img;
+		    this.img = img.img();
 		    this.imgscale = img.scale;
 		    break;
 		}
@@ -62,7 +62,7 @@ public class SAttrWnd extends Widget {
 	    super(new Coord(attrw, attrf.height() + UI.scale(2)));
 	    this.res = Resource.local().loadwait("gfx/hud/chr/" + attr);
 	    this.nm = attr;
-	    this.img = new TexI(convolve(res.flayer(Resource.imgc).img, new Coord(this.sz.y, this.sz.y), iconfilter));
+	    this.img = new TexI(convolve(res.flayer(Resource.imgc).img(), new Coord(this.sz.y, this.sz.y), iconfilter));
 	    this.rnm = attrf.render(res.flayer(Resource.tooltip).t);
 	    this.attr = glob.getcattr(attr);
 	    this.bg = bg;
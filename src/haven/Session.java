@@ -32,8 +32,12 @@ import java.lang.ref.WeakReference;
 import java.net.*;
 import java.util.*;
 import java.util.function.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
 import java.io.*;
 import java.nio.*;
+import java.nio.file.Path;
 import java.lang.ref.*;
 
 public class Session implements Resource.Resolver {
@@ -68,14 +72,23 @@ public class Session implements Resource.Resolver {
     public final Connection conn;
     public int connfailed = 0;
     public String connerror = null;
-    LinkedList<PMessage> uimsgs = new LinkedList<PMessage>();
+    /* UI messages are passed from the network thread to the single
+     * UI thread running the RemoteUI through a lock-free queue; the
+     * consumer parks when it runs dry and producers unpark it. */
+    private final Queue<PMessage> uimsgs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger uidepth = new AtomicInteger(0);
+    private volatile Thread uiwaiter = null;
+    private volatile double uifirst;
+    private double uibatchfirst, uilat, uibatchsz;
+    private int uimaxdepth;
+    private long uibatches, uicoalesced;
     String username;
     final Map<Integer, CachedRes> rescache = new TreeMap<Integer, CachedRes>();
     public final Glob glob;
     public final CharacterInfo character;
     public UI ui;
     public byte[] sesskey;
-    private boolean closed = false;
+    private volatile boolean closed = false;
     private int localCacheId = -1;
 
     @SuppressWarnings("serial")
@@ -143,6 +156,19 @@ public class Session implements Resource.Resolver {
 		return(res);
 	    }
 
+	    public Resource tryGet() {
+		if(res == null) {
+		    synchronized(CachedRes.this) {
+			if(res == null) {
+			    if(resnm == null)
+				return(null);
+			    res = Resource.remote().load(resnm, resver, prio).tryGet();
+			}
+		    }
+		}
+		return(res);
+	    }
+
 	    public String toString() {
 		if(res == null) {
 		    return("<res:" + resid + ">");
@@ -317,10 +343,10 @@ public class Session implements Resource.Resolver {
 
     private final Connection.Callback conncb = new Connection.Callback() {
 	    public void closed() {
-		synchronized(uimsgs) {
-		    closed = true;
-		    uimsgs.notifyAll();
-		}
+		closed = true;
+		Thread w = uiwaiter;
+		if(w != null)
+		    LockSupport.unpark(w);
 	    }
 
 	    public void handle(PMessage msg) {
@@ -336,18 +362,42 @@ public class Session implements Resource.Resolver {
 	    }
 	};
 
-    public Session(SocketAddress server, String username, byte[] cookie, Object... args) throws InterruptedException {
+    private Session(Connection conn, String username) {
 	this.character = new CharacterInfo();
-	this.conn = new Connection(server, username);
+	this.conn = conn;
 	this.username = username;
 	this.glob = new Glob(this);
+	Path trace = SessionTrace.path.get();
+	if(trace != null) {
+	    try {
+		conn.add(new SessionTrace.Recorder(trace));
+	    } catch(IOException e) {
+		new Warning(e, "could not start session trace").issue();
+	    }
+	}
 	conn.add(conncb);
-	conn.connect(cookie, args);
-	
+    }
+
+    private void init() {
 	Arrays.stream(LOCAL_CACHED).forEach(this::cacheres);
 	Config.setUserName(username);
     }
 
+    public Session(SocketAddress server, String username, byte[] cookie, Object... args) throws InterruptedException {
+	this(new Connection(server, username), username);
+	conn.connect(cookie, args);
+	init();
+    }
+
+    /* Creates an offline session that plays back a recorded trace
+     * instead of talking to a server. */
+    public static Session replay(SessionTrace.Reader trace, String username, boolean realtime) {
+	Session ret = new Session(new Connection(null, username), username);
+	ret.conn.replay(trace, realtime);
+	ret.init();
+	return(ret);
+    }
+
     public void close() {
 	conn.close();
 	glob.oc.destroy();
@@ -357,23 +407,71 @@ public class Session implements Resource.Resolver {
 	conn.queuemsg(pmsg);
     }
 
+    /* Retains msg until the UI runner has handled it and released
+     * it again. */
     public void postuimsg(PMessage msg) {
-	synchronized(uimsgs) {
-	    uimsgs.add(msg);
-	    uimsgs.notifyAll();
+	if(uidepth.getAndIncrement() == 0)
+	    uifirst = Utils.rtime();
+	uimsgs.add(msg.retain());
+	Thread w = uiwaiter;
+	if(w != null)
+	    LockSupport.unpark(w);
+    }
+
+    private boolean uiwait() throws InterruptedException {
+	while(true) {
+	    if(!uimsgs.isEmpty())
+		return(true);
+	    if(closed)
+		return(!uimsgs.isEmpty());
+	    uiwaiter = Thread.currentThread();
+	    try {
+		if(uimsgs.isEmpty() && !closed)
+		    LockSupport.park(this);
+	    } finally {
+		uiwaiter = null;
+	    }
+	    if(Thread.interrupted())
+		throw(new InterruptedException());
 	}
     }
 
+    /* Only one thread may consume UI messages at a time. */
     public PMessage getuimsg() throws InterruptedException {
-	synchronized(uimsgs) {
-	    while(true) {
-		if(!uimsgs.isEmpty())
-		    return(uimsgs.remove());
-		if(closed)
-		    return(null);
-		uimsgs.wait();
-	    }
+	if(!uiwait())
+	    return(null);
+	PMessage ret = uimsgs.poll();
+	uidepth.decrementAndGet();
+	return(ret);
+    }
+
+    /* Waits for UI messages and moves all queued ones to buf. Returns
+     * false when the session is closed and no messages remain. */
+    public boolean getuimsgs(Collection<? super PMessage> buf) throws InterruptedException {
+	if(!uiwait())
+	    return(false);
+	uibatchfirst = uifirst;
+	int n = 0;
+	for(PMessage msg = uimsgs.poll(); msg != null; msg = uimsgs.poll()) {
+	    buf.add(msg);
+	    n++;
 	}
+	uimaxdepth = Math.max(uimaxdepth, n);
+	uidepth.addAndGet(-n);
+	uibatchsz = (uibatchsz * 0.99) + (n * 0.01);
+	return(true);
+    }
+
+    /* Called by the consumer after handling a batch from getuimsgs. */
+    public void uidispatched(int coalesced) {
+	uibatches++;
+	uicoalesced += coalesced;
+	uilat = (uilat * 0.99) + ((Utils.rtime() - uibatchfirst) * 0.01);
+    }
+
+    public String uistats() {
+	return(String.format("depth %d (%d), batch %.1f, lat %.1f ms, batches %,d, coalesced %,d",
+			     uidepth.get(), uimaxdepth, uibatchsz, uilat * 1000, uibatches, uicoalesced));
     }
 
     public void sendmsg(PMessage msg) {
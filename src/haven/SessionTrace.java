@@ -0,0 +1,248 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.zip.*;
+
+/* Binary traces of the traffic crossing the Connection.Callback
+ * boundary, for replaying real sessions offline. A trace is a
+ * gzipped sequence of timestamped events following a magic header;
+ * message payloads are stored as received, so that replay decodes
+ * them with the same code paths as live traffic. */
+public class SessionTrace {
+    public static final Config.Variable<Path> path = Config.Variable.propp("haven.sesstrace", "");
+    private static final byte[] sig = "Haven session trace 1".getBytes(Utils.ascii);
+    public static final int EV_END = 0;
+    public static final int EV_REL = 1;
+    public static final int EV_OBJ = 2;
+    public static final int EV_MAP = 3;
+
+    public static class FormatException extends IOException {
+	public FormatException(String msg) {
+	    super(msg);
+	}
+    }
+
+    /* Must be added to a connection before any callback that
+     * consumes messages, since it records messages from their current
+     * read position. */
+    public static class Recorder implements Connection.Callback {
+	private final double start = Utils.rtime();
+	private DataOutputStream out;
+	private long events;
+
+	public Recorder(OutputStream out) throws IOException {
+	    this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(out)));
+	    this.out.write(sig);
+	}
+
+	public Recorder(Path path) throws IOException {
+	    this(Files.newOutputStream(path));
+	}
+
+	private void head(int type) throws IOException {
+	    out.writeByte(type);
+	    out.writeDouble(Utils.rtime() - start);
+	    events++;
+	}
+
+	private void payload(Message msg) throws IOException {
+	    int len = msg.rt - msg.rh;
+	    out.writeInt(len);
+	    out.write(msg.rbuf, msg.rh, len);
+	}
+
+	private void error(IOException e) {
+	    new Warning(e, "session trace recording failed, stopping").issue();
+	    close();
+	}
+
+	private synchronized void close() {
+	    if(out != null) {
+		try {
+		    out.close();
+		} catch(IOException e) {
+		}
+		out = null;
+	    }
+	}
+
+	public synchronized void handle(PMessage msg) {
+	    if(out == null)
+		return;
+	    try {
+		head(EV_REL);
+		out.writeByte(msg.type);
+		payload(msg);
+	    } catch(IOException e) {
+		error(e);
+	    }
+	}
+
+	public synchronized void handle(OCache.ObjDelta delta) {
+	    if(out == null)
+		return;
+	    try {
+		head(EV_OBJ);
+		out.writeByte(delta.fl);
+		out.writeLong(delta.id);
+		out.writeInt(delta.frame);
+		out.writeInt(delta.initframe);
+		out.writeBoolean(delta.rem);
+		out.writeShort(delta.attrs.size());
+		for(OCache.AttrDelta attr : delta.attrs) {
+		    out.writeByte(attr.type);
+		    payload(attr);
+		}
+	    } catch(IOException e) {
+		error(e);
+	    }
+	}
+
+	public synchronized void mapdata(Message msg) {
+	    if(out == null)
+		return;
+	    try {
+		head(EV_MAP);
+		payload(msg);
+	    } catch(IOException e) {
+		error(e);
+	    }
+	}
+
+	public void closed() {
+	    synchronized(this) {
+		if(out != null) {
+		    try {
+			out.writeByte(EV_END);
+		    } catch(IOException e) {
+		    }
+		}
+	    }
+	    close();
+	}
+
+	public long events() {
+	    return(events);
+	}
+    }
+
+    public static abstract class Event {
+	public final double time;
+
+	public Event(double time) {
+	    this.time = time;
+	}
+
+	public abstract void dispatch(Connection.Callback cb);
+    }
+
+    public static class Reader implements AutoCloseable {
+	private final DataInputStream in;
+	private boolean eof = false;
+
+	public Reader(InputStream in) throws IOException {
+	    this.in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)));
+	    byte[] buf = new byte[sig.length];
+	    this.in.readFully(buf);
+	    if(!Arrays.equals(buf, sig))
+		throw(new FormatException("not a session trace"));
+	}
+
+	public Reader(Path path) throws IOException {
+	    this(Files.newInputStream(path));
+	}
+
+	private byte[] payload() throws IOException {
+	    int len = in.readInt();
+	    if(len < 0)
+		throw(new FormatException("invalid payload length: " + len));
+	    byte[] buf = new byte[len];
+	    in.readFully(buf);
+	    return(buf);
+	}
+
+	/* Returns null at the end of the trace. Traces cut short by a
+	 * crash are treated as ending at the last complete event. */
+	public Event next() throws IOException {
+	    if(eof)
+		return(null);
+	    int type;
+	    double time;
+	    try {
+		type = in.readByte();
+		if(type == EV_END) {
+		    eof = true;
+		    return(null);
+		}
+		time = in.readDouble();
+		switch(type) {
+		case EV_REL: {
+		    PMessage msg = new PMessage(in.readByte() & 0xff, payload());
+		    return(new Event(time) {
+			    public void dispatch(Connection.Callback cb) {cb.handle(msg.clone());}
+			});
+		}
+		case EV_OBJ: {
+		    int fl = in.readByte() & 0xff;
+		    long id = in.readLong();
+		    int frame = in.readInt();
+		    OCache.ObjDelta delta = new OCache.ObjDelta(fl, id, frame);
+		    delta.initframe = in.readInt();
+		    delta.rem = in.readBoolean();
+		    for(int i = 0, n = in.readUnsignedShort(); i < n; i++) {
+			int atype = in.readByte() & 0xff;
+			byte[] buf = payload();
+			delta.attrs.add(new OCache.AttrDelta(delta, atype, new MessageBuf(buf), buf.length));
+		    }
+		    return(new Event(time) {
+			    public void dispatch(Connection.Callback cb) {cb.handle(delta);}
+			});
+		}
+		case EV_MAP: {
+		    MessageBuf msg = new MessageBuf(payload());
+		    return(new Event(time) {
+			    public void dispatch(Connection.Callback cb) {cb.mapdata(msg.clone());}
+			});
+		}
+		default:
+		    throw(new FormatException("unknown event type: " + type));
+		}
+	    } catch(EOFException e) {
+		eof = true;
+		return(null);
+	    }
+	}
+
+	public void close() throws IOException {
+	    in.close();
+	}
+    }
+}
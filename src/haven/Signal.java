@@ -0,0 +1,81 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.function.*;
+
+/* An event that threads can block on until it next fires. Each
+ * firing bumps a generation counter, so a waiter that samples the
+ * generation before checking its condition cannot miss a firing
+ * that happens between the check and the wait. */
+public class Signal {
+    private long gen = 0;
+
+    public void fire() {
+	synchronized(this) {
+	    gen++;
+	    notifyAll();
+	}
+    }
+
+    public long gen() {
+	synchronized(this) {
+	    return(gen);
+	}
+    }
+
+    /* Waits for at most timeout milliseconds for the signal to fire
+     * after generation g, and returns whether it did. */
+    public boolean await(long g, long timeout) throws InterruptedException {
+	long end = System.currentTimeMillis() + timeout;
+	synchronized(this) {
+	    while(gen == g) {
+		long left = end - System.currentTimeMillis();
+		if(left <= 0)
+		    return(false);
+		wait(left);
+	    }
+	    return(true);
+	}
+    }
+
+    /* Waits for at most timeout milliseconds for cond to hold,
+     * checking it again each time the signal fires. The condition
+     * is not run under the signal's lock. */
+    public boolean until(BooleanSupplier cond, long timeout) throws InterruptedException {
+	long end = System.currentTimeMillis() + timeout;
+	while(true) {
+	    long g = gen();
+	    if(cond.getAsBoolean())
+		return(true);
+	    long left = end - System.currentTimeMillis();
+	    if(left <= 0)
+		return(false);
+	    await(g, left);
+	}
+    }
+}
@@ -64,7 +64,7 @@ public class SimpleSprite {
 
     public final void draw(Graphics g, Coord cc) {
 	Coord c = cc.add(ul());
-	g.drawImage(img.img, c.x, c.y, null);
+	g.drawImage(img.img(), c.x, c.y, null);
     }
     
     public final Coord ul() {
@@ -79,7 +79,7 @@ public class SimpleSprite {
 	c = c.add(ul().inv());
 	if((c.x < 0) || (c.y < 0) || (c.x >= img.sz.x) || (c.y >= img.sz.y))
 	    return(false);
-	int cl = img.img.getRGB(c.x, c.y);
+	int cl = img.img().getRGB(c.x, c.y);
 	return(Utils.rgbm.getAlpha(cl) >= 128);
     }
 }
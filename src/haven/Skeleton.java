@@ -630,6 +630,42 @@ public class Skeleton {
 	    }
 	    s = new ResourceSkeleton(bones.values(), this);
 	}
+
+	private Res(Resource res, Collection<Bone> bones) {
+	    res.super();
+	    s = new ResourceSkeleton(bones, this);
+	}
+
+	/* Saves the bones in their sorted order with their parents by
+	 * index, so that neither the packed bone data nor the parent
+	 * names need resolving again. */
+	public static final ResSnapshot.Codec<Res> snapshot = new ResSnapshot.Codec<Res>() {
+		public boolean save(Res l, Message out) {
+		    out.adduint16(l.s.blist.length);
+		    for(Bone b : l.s.blist) {
+			out.addstring(b.name).addint16((short)((b.parent == null) ? -1 : b.parent.idx));
+			out.addfloat32(b.ipos.x).addfloat32(b.ipos.y).addfloat32(b.ipos.z);
+			out.addfloat32(b.irax.x).addfloat32(b.irax.y).addfloat32(b.irax.z);
+			out.addfloat32(b.irang);
+		    }
+		    return(true);
+		}
+
+		public Res load(Resource res, Message in) {
+		    Bone[] bones = new Bone[in.uint16()];
+		    for(int i = 0; i < bones.length; i++) {
+			String nm = in.string();
+			int p = in.int16();
+			if(p >= i)
+			    return(null);
+			Coord3f pos = new Coord3f(in.float32(), in.float32(), in.float32());
+			Coord3f rax = new Coord3f(in.float32(), in.float32(), in.float32());
+			bones[i] = new Bone(nm, pos, rax, in.float32());
+			bones[i].parent = (p < 0) ? null : bones[p];
+		    }
+		    return(new Res(res, Arrays.asList(bones)));
+		}
+	    };
 	
 	public void init() {}
     }
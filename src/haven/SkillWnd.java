@@ -203,7 +203,7 @@ public class SkillWnd extends Widget {
 
 	protected void drawitem(GOut g, Skill sk) {
 	    if(sk.small == null)
-		sk.small = new TexI(convolvedown(sk.res.get().flayer(Resource.imgc).img, UI.scale(40, 40), iconfilter));
+		sk.small = new TexI(convolvedown(sk.res.get().flayer(Resource.imgc).img(), UI.scale(40, 40), iconfilter));
 	    g.image(sk.small, Coord.z);
 	}
 
@@ -271,7 +271,7 @@ public class SkillWnd extends Widget {
 
 	private Tex crtex(Credo cr) {
 	    if(cr.small == null)
-		cr.small = new TexI(convolvedown(cr.res.get().flayer(Resource.imgc).img, crsz, iconfilter));
+		cr.small = new TexI(convolvedown(cr.res.get().flayer(Resource.imgc).img(), crsz, iconfilter));
 	    return(cr.small);
 	}
 
@@ -406,7 +406,7 @@ public class SkillWnd extends Widget {
 
 	protected void drawitem(GOut g, Experience exp) {
 	    if(exp.small == null)
-		exp.small = new TexI(convolvedown(exp.res.get().flayer(Resource.imgc).img, UI.scale(40, 40), iconfilter));
+		exp.small = new TexI(convolvedown(exp.res.get().flayer(Resource.imgc).img(), UI.scale(40, 40), iconfilter));
 	    g.image(exp.small, Coord.z);
 	}
 
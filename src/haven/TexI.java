@@ -30,18 +30,26 @@ import java.awt.Graphics;
 import java.awt.image.*;
 import java.awt.color.ColorSpace;
 import java.nio.ByteBuffer;
+import java.util.function.*;
 import haven.render.*;
 import haven.render.Texture2D.Sampler2D;
 import haven.render.DataBuffer;
 
 public class TexI implements Tex {
     public static ComponentColorModel glcm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), new int[] {8, 8, 8, 8}, true, false, ComponentColorModel.TRANSLUCENT, java.awt.image.DataBuffer.TYPE_BYTE);
+    /* Null if the texture was made with a source to get its image
+     * from again, in which case it only holds its image until it is
+     * uploaded; use back(). */
     public final BufferedImage back;
+    private final Supplier<BufferedImage> source;
+    private volatile BufferedImage held;
     protected final Coord sz;
     protected final Coord tdim;
 
-    public TexI(BufferedImage back, boolean round) {
-	this.back = back;
+    public TexI(BufferedImage back, boolean round, Supplier<BufferedImage> source) {
+	this.back = (source == null) ? back : null;
+	this.held = back;
+	this.source = source;
 	this.sz = Utils.imgsz(back);
 	if(round)
 	    this.tdim = new Coord(Tex.nextp2(sz.x), Tex.nextp2(sz.y));
@@ -49,10 +57,29 @@ public class TexI implements Tex {
 	    this.tdim = sz;
     }
 
+    public TexI(BufferedImage back, boolean round) {
+	this(back, round, null);
+    }
+
+    public TexI(BufferedImage back, Supplier<BufferedImage> source) {
+	this(back, true, source);
+    }
+
     public TexI(BufferedImage back) {
 	this(back, true);
     }
 
+    BufferedImage held() {
+	return(held);
+    }
+
+    public BufferedImage back() {
+	BufferedImage ret = held;
+	if(ret == null)
+	    ret = source.get();
+	return(ret);
+    }
+
     public Coord sz() {return(sz);}
 
     private ColorTex st = null;
@@ -66,11 +93,14 @@ public class TexI implements Tex {
 						      if(img.level != 0)
 							  return(null);
 						      FillBuffer buf = env.fillbuf(img);
+						      BufferedImage back = back();
 						      if(Utils.eq(tdim, sz) && Utils.eq(detectfmt(back), img.tex.efmt)) {
 							  buf.pull(ByteBuffer.wrap(((DataBufferByte)back.getRaster().getDataBuffer()).getData()));
 						      } else {
 							  buf.pull(ByteBuffer.wrap(convert(back, tdim)));
 						      }
+						      if(source != null)
+							  held = null;
 						      return(buf);
 						  });
 		    tex.desc(this);
@@ -45,6 +45,8 @@ public class Tileset extends Resource.Layer {
     public WeightList<Tile> ground;
     public WeightList<Tile>[] ctrans, btrans;
     public int flavprob;
+    private List<Resource.Named> flres = Collections.emptyList();
+    private List<Integer> flw = Collections.emptyList();
 
     @Resource.LayerName("tile")
     public static class Tile extends Resource.Layer {
@@ -312,24 +314,13 @@ public class Tileset extends Resource.Layer {
 	    case 1:
 		int flnum = buf.uint16();
 		flavprob = buf.uint16();
-		List<Indir<Resource>> flr = new ArrayList<>();
+		List<Resource.Named> flr = new ArrayList<>();
 		List<Integer> flw = new ArrayList<>();
-		int twa = 0;
 		for(int i = 0; i < flnum; i++) {
 		    flr.add(res.pool.load(buf.string(), buf.uint16()));
-		    int w = buf.uint8();
-		    flw.add(w);
-		    twa += w;
-		}
-		/* XXX: Bug-for-bug compatibility */
-		flw.set(0, flw.get(0) + twa);
-		twa += twa;
-		int tw = twa;
-		for(int i = 0; i < flnum; i++) {
-		    Indir<Resource> fres = flr.get(i);
-		    int w = flw.get(i);
-		    flavors.add(Utils.cache(() -> new SpriteFlavor(fres, (double)w / (double)(flavprob * tw))));
+		    flw.add(buf.uint8());
 		}
+		flavors(flr, flw);
 		break;
 	    case 2:
 		tags = new String[buf.int8()];
@@ -343,6 +334,64 @@ public class Tileset extends Resource.Layer {
 	}
     }
 
+    private void flavors(List<Resource.Named> flr, List<Integer> flw) {
+	this.flres = flr;
+	this.flw = new ArrayList<>(flw);
+	int twa = 0;
+	for(int w : flw)
+	    twa += w;
+	/* XXX: Bug-for-bug compatibility */
+	flw.set(0, flw.get(0) + twa);
+	twa += twa;
+	int tw = twa;
+	for(int i = 0; i < flr.size(); i++) {
+	    Indir<Resource> fres = flr.get(i);
+	    int w = flw.get(i);
+	    flavors.add(Utils.cache(() -> new SpriteFlavor(fres, (double)w / (double)(flavprob * tw))));
+	}
+    }
+
+    /* Tilesets are cheap to decode themselves, but are saved along
+     * with the other layers of a resource so that a snapshot covers
+     * everything needed to set up its tiler. */
+    public static final ResSnapshot.Codec<Tileset> snapshot = new ResSnapshot.Codec<Tileset>() {
+	    public boolean save(Tileset l, Message out) {
+		out.addstring(l.tn);
+		try {
+		    out.addlist(l.ta).adduint8(Message.T_END);
+		} catch(RuntimeException e) {
+		    /* Not every argument type can be encoded. */
+		    return(false);
+		}
+		out.adduint8(l.tags.length);
+		for(String tag : l.tags)
+		    out.addstring(tag);
+		out.adduint16(l.flavprob).adduint16(l.flres.size());
+		for(int i = 0; i < l.flres.size(); i++)
+		    out.addstring(l.flres.get(i).name).adduint16(l.flres.get(i).ver).adduint8(l.flw.get(i));
+		return(true);
+	    }
+
+	    public Tileset load(Resource res, Message in) {
+		Tileset ret = new Tileset(res);
+		ret.tn = in.string();
+		ret.ta = in.list();
+		ret.tags = new String[in.uint8()];
+		for(int i = 0; i < ret.tags.length; i++)
+		    ret.tags[i] = in.string();
+		ret.flavprob = in.uint16();
+		List<Resource.Named> flr = new ArrayList<>();
+		List<Integer> flw = new ArrayList<>();
+		for(int i = 0, n = in.uint16(); i < n; i++) {
+		    flr.add(res.pool.load(in.string(), in.uint16()));
+		    flw.add(in.uint8());
+		}
+		if(!flr.isEmpty())
+		    ret.flavors(flr, flw);
+		return(ret);
+	    }
+	};
+
     public Tiler.Factory tfac() {
 	synchronized(this) {
 	    if(tfac == null) {
@@ -42,6 +42,8 @@ import java.awt.event.InputEvent;
 import java.awt.image.BufferedImage;
 import java.util.*;
 import java.io.Serializable;
+import java.io.ObjectOutputStream;
+import java.io.IOException;
 import java.util.List;
 
 import static haven.Utils.el;
@@ -646,7 +648,8 @@ public class UI {
     public class UiMessage implements Runnable, Serializable {
 	public final int id;
 	public final String msg;
-	public final Object[] args;
+	private Object[] args;
+	private transient PMessage raw;
 
 	private UiMessage(int id, String msg, Object[] args) {
 	    this.id = id;
@@ -654,19 +657,47 @@ public class UI {
 	    this.args = args;
 	}
 
+	private UiMessage(int id, String msg, PMessage raw) {
+	    this.id = id;
+	    this.msg = msg;
+	    this.raw = raw.retain();
+	}
+
+	public Object[] args() {
+	    if(args == null)
+		args = (raw == null) ? new Object[0] : raw.borrow().list();
+	    return(args);
+	}
+
 	public void run() {
 	    Widget wdg = getwidget(id);
 	    if(wdg != null) {
 		synchronized(UI.this) {
-		    wdg.uimsg(msg.intern(), args);
+		    if((args != null) || !(wdg instanceof Widget.RawMessage) ||
+		       !((Widget.RawMessage)wdg).rawmsg(msg.intern(), raw.borrow()))
+			wdg.uimsg(msg.intern(), args());
+		}
+		if(raw != null) {
+		    raw.release();
+		    raw = null;
 		}
 	    } else {
+		Object[] args = args();
+		if(raw != null) {
+		    raw.release();
+		    raw = null;
+		}
 		throw(new UIException("Uimsg to non-existent widget " + id, msg, args));
 	    }
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException {
+	    args();
+	    out.defaultWriteObject();
+	}
+
 	public String toString() {
-	    return(String.format("#<wdgmsg %d %s %s>", id, msg, Arrays.asList(args)));
+	    return(String.format("#<wdgmsg %d %s %s>", id, msg, Arrays.asList(args())));
 	}
     }
 
@@ -674,6 +705,14 @@ public class UI {
 	submitcmd(new Command(new UiMessage(id, msg, args)).dep(id, true));
     }
 
+    /* Like uimsg(int, String, Object...), but leaves the arguments
+     * undecoded in the message until the receiving widget handles
+     * them, so that widgets implementing Widget.RawMessage can read
+     * them without an intermediate Object[]. */
+    public void uimsg(int id, String msg, PMessage args) {
+	submitcmd(new Command(new UiMessage(id, msg, args)).dep(id, true));
+    }
+
     public static interface MessageWidget {
 	public static final Audio.Clip errsfx = Audio.resclip(Resource.local().loadwait("sfx/error"));
 	public static final Audio.Clip msgsfx = Audio.resclip(Resource.local().loadwait("sfx/msg"));
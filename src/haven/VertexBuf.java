@@ -28,6 +28,7 @@ package haven;
 
 import java.nio.*;
 import java.util.*;
+import java.util.function.*;
 import java.lang.annotation.*;
 import haven.render.*;
 import haven.render.VertexArray.Layout;
@@ -429,6 +430,55 @@ public class VertexBuf {
 
     private static final Map<String, DataCons> rnames = new TreeMap<String, DataCons>();
 
+    /* Array types whose decoded data can be kept in a resource
+     * snapshot register themselves here, by exact class. Vertex
+     * buffers with any other type of array are not saved. */
+    public interface Snapshot<T extends AttribData> {
+	public void save(T data, Message out);
+	public T load(Message in);
+    }
+
+    private static final Map<String, Snapshot<?>> snapshots = new HashMap<>();
+
+    public static <T extends AttribData> void snapshot(Class<T> cl, Snapshot<T> codec) {
+	synchronized(snapshots) {
+	    snapshots.put(cl.getName(), codec);
+	}
+    }
+
+    public static <T extends FloatData> void snapshot(Class<T> cl, Function<FloatBuffer, T> cons) {
+	snapshot(cl, new Snapshot<T>() {
+		public void save(T data, Message out) {ResSnapshot.addfloats(out, data.data);}
+		public T load(Message in) {return(cons.apply(ResSnapshot.floats(in)));}
+	    });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Snapshot<AttribData> snapshot(String cl) {
+	synchronized(snapshots) {
+	    if(snapshots.containsKey(cl))
+		return((Snapshot<AttribData>)snapshots.get(cl));
+	}
+	/* Array classes register themselves when initialized. */
+	try {
+	    Class.forName(cl, true, VertexBuf.class.getClassLoader());
+	} catch(ClassNotFoundException e) {
+	}
+	synchronized(snapshots) {
+	    Snapshot<?> ret = snapshots.get(cl);
+	    if(ret == null)
+		snapshots.put(cl, null);
+	    return((Snapshot<AttribData>)ret);
+	}
+    }
+
+    static {
+	snapshot(VertexData.class, VertexData::new);
+	snapshot(NormalData.class, NormalData::new);
+	snapshot(ColorData.class, ColorData::new);
+	snapshot(TexelData.class, TexelData::new);
+    }
+
     static {
 	for(Class<?> cl : dolda.jglob.Loader.get(ResName.class).classes()) {
 	    String nm = cl.getAnnotation(ResName.class).value();
@@ -463,6 +513,20 @@ public class VertexBuf {
 	    this.id = 0;
 	}
 
+	private VertexRes(Resource res, int id, AttribData[] bufs) {
+	    res.super();
+	    this.id = id;
+	    this.b = resbuf(res, bufs);
+	}
+
+	private static VertexBuf resbuf(Resource res, AttribData[] bufs) {
+	    return(new VertexBuf(bufs) {
+		    public String toString() {
+			return(String.format("#<vertexbuf %s>", res.name));
+		    }
+		});
+	}
+
 	public VertexRes(Resource res, Message buf) {
 	    res.super();
 	    List<AttribData> bufs = new LinkedList<AttribData>();
@@ -490,12 +554,37 @@ public class VertexBuf {
 		    cons.cons(bufs, res, buf, num);
 		}
 	    }
-	    this.b = new VertexBuf(bufs.toArray(new AttribData[0])) {
-		    public String toString() {
-			return(String.format("#<vertexbuf %s>", res.name));
-		    }
-		};
+	    this.b = resbuf(res, bufs.toArray(new AttribData[0]));
 	}
+
+	/* Saves the decoded arrays, so that packed formats need not be
+	 * unpacked again. */
+	public static final ResSnapshot.Codec<VertexRes> snapshot = new ResSnapshot.Codec<VertexRes>() {
+		public boolean save(VertexRes l, Message out) {
+		    for(AttribData buf : l.b.bufs) {
+			if(VertexBuf.snapshot(buf.getClass().getName()) == null)
+			    return(false);
+		    }
+		    out.addint16((short)l.id).adduint8(l.b.bufs.length);
+		    for(AttribData buf : l.b.bufs) {
+			out.addstring(buf.getClass().getName());
+			VertexBuf.snapshot(buf.getClass().getName()).save(buf, out);
+		    }
+		    return(true);
+		}
+
+		public VertexRes load(Resource res, Message in) {
+		    int id = in.int16();
+		    AttribData[] bufs = new AttribData[in.uint8()];
+		    for(int i = 0; i < bufs.length; i++) {
+			Snapshot<AttribData> cons = VertexBuf.snapshot(in.string());
+			if(cons == null)
+			    return(null);
+			bufs[i] = cons.load(in);
+		    }
+		    return(new VertexRes(res, id, bufs));
+		}
+	    };
 	
 	public void init() {}
 
@@ -699,6 +699,15 @@ public class Widget {
 	public void handle(Widget tgt, Object... args);
     }
 
+    /* Implemented by widgets that want to decode some of their
+     * messages straight from the wire, using the typed accessors of
+     * Message. rawmsg should return false, without reading from args,
+     * for messages it leaves to uimsg(String, Object...). args may
+     * share a pooled buffer and must not be kept after returning. */
+    public static interface RawMessage {
+	public boolean rawmsg(String msg, Message args);
+    }
+
     public void uimsg(String msg, Object... args) {
 	if(msg == "tabfocus") {
 	    setfocustab(Utils.bv(args[0]));
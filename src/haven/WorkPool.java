@@ -0,0 +1,230 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/* A pool of worker threads shared by Defer and Loader. Work is
+ * queued in a small number of priority lanes, and idle workers
+ * always take from the most urgent non-empty lane. A queued task can
+ * be promoted to a more urgent lane when something starts waiting
+ * for it, in which case its entry is simply requeued and the stale
+ * one skipped when it comes up. */
+public class WorkPool {
+    public static final Config.Variable<Integer> nworkers = Config.Variable.propi("haven.workers", 0);
+    private static final AtomicInteger threadno = new AtomicInteger(0);
+    private final Queue<Ticket>[] lanes;
+    private final AtomicInteger[] depth;
+    private final double[] latency;
+    private final ThreadGroup group;
+    private final String name;
+    private final int maxthreads;
+    private final Collection<Thread> pool = new ArrayList<>();
+    private final AtomicInteger busy = new AtomicInteger(0);
+    private int idle = 0;
+
+    public static enum Lane {
+	/* Something is waiting for the result right now. */
+	NOW,
+	/* Expected to be needed soon. */
+	NEAR,
+	/* Nobody has asked for the result yet. */
+	BACKGROUND;
+
+	private static final Lane[] all = values();
+
+	public static Lane of(int prio) {
+	    if(prio >= 5)
+		return(NOW);
+	    if(prio >= 0)
+		return(NEAR);
+	    return(BACKGROUND);
+	}
+    }
+
+    public class Ticket {
+	public final Runnable task;
+	public final Lane lane;
+	private final long qtime;
+	private final AtomicBoolean taken = new AtomicBoolean(false);
+
+	private Ticket(Runnable task, Lane lane, long qtime) {
+	    this.task = task;
+	    this.lane = lane;
+	    this.qtime = qtime;
+	}
+
+	/* Returns the ticket that now stands for the task, which is
+	 * this one unless it was actually moved. */
+	public Ticket promote(Lane lane) {
+	    if(lane.ordinal() >= this.lane.ordinal())
+		return(this);
+	    if(!taken.compareAndSet(false, true))
+		return(this);
+	    Ticket n = new Ticket(task, lane, qtime);
+	    enqueue(n);
+	    depth[this.lane.ordinal()].decrementAndGet();
+	    return(n);
+	}
+
+	public boolean queued() {
+	    return(!taken.get());
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    public WorkPool(ThreadGroup group, String name, int maxthreads) {
+	this.group = group;
+	this.name = name;
+	this.maxthreads = maxthreads;
+	this.lanes = new Queue[Lane.all.length];
+	this.depth = new AtomicInteger[Lane.all.length];
+	this.latency = new double[Lane.all.length];
+	for(int i = 0; i < lanes.length; i++) {
+	    lanes[i] = new ConcurrentLinkedQueue<>();
+	    depth[i] = new AtomicInteger(0);
+	}
+    }
+
+    public WorkPool(ThreadGroup group, String name) {
+	this(group, name, defthreads());
+    }
+
+    public static int defthreads() {
+	int n = nworkers.get();
+	if(n > 0)
+	    return(n);
+	return(Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private void enqueue(Ticket t) {
+	depth[t.lane.ordinal()].incrementAndGet();
+	lanes[t.lane.ordinal()].add(t);
+	synchronized(pool) {
+	    if(idle > 0) {
+		pool.notify();
+	    } else if(pool.size() < maxthreads) {
+		spawn();
+	    }
+	}
+    }
+
+    private void spawn() {
+	Thread th = new HackThread(group, this::loop, name + " #" + threadno.getAndIncrement());
+	th.setDaemon(true);
+	th.setPriority((Thread.NORM_PRIORITY + Thread.MIN_PRIORITY) / 2);
+	pool.add(th);
+	th.start();
+    }
+
+    public Ticket submit(Runnable task, Lane lane) {
+	Ticket ret = new Ticket(task, lane, System.nanoTime());
+	enqueue(ret);
+	return(ret);
+    }
+
+    private int pending() {
+	int ret = 0;
+	for(AtomicInteger d : depth)
+	    ret += d.get();
+	return(ret);
+    }
+
+    private Ticket take() {
+	for(int i = 0; i < lanes.length; i++) {
+	    Ticket t;
+	    while((t = lanes[i].poll()) != null) {
+		if(t.taken.compareAndSet(false, true)) {
+		    depth[i].decrementAndGet();
+		    double w = (System.nanoTime() - t.qtime) * 1e-9;
+		    latency[i] = (latency[i] * 0.95) + (w * 0.05);
+		    return(t);
+		}
+	    }
+	}
+	return(null);
+    }
+
+    private void loop() {
+	try {
+	    long start = System.nanoTime();
+	    while(true) {
+		Ticket t = take();
+		if(t == null) {
+		    synchronized(pool) {
+			if(pending() > 0)
+			    continue;
+			if(System.nanoTime() - start > 5000000000L)
+			    return;
+			idle++;
+			try {
+			    pool.wait(1000);
+			} catch(InterruptedException e) {
+			    return;
+			} finally {
+			    idle--;
+			}
+		    }
+		    continue;
+		}
+		busy.getAndIncrement();
+		try {
+		    t.task.run();
+		} finally {
+		    busy.getAndDecrement();
+		}
+		start = System.nanoTime();
+	    }
+	} finally {
+	    synchronized(pool) {
+		pool.remove(Thread.currentThread());
+		if(pool.isEmpty() && (pending() > 0))
+		    spawn();
+	    }
+	}
+    }
+
+    public int depth(Lane lane) {
+	return(depth[lane.ordinal()].get());
+    }
+
+    public double latency(Lane lane) {
+	return(latency[lane.ordinal()]);
+    }
+
+    public String stats() {
+	StringBuilder buf = new StringBuilder();
+	for(Lane lane : Lane.all)
+	    buf.append(String.format("%d(%.0fms) ", depth(lane), latency(lane) * 1000));
+	synchronized(pool) {
+	    buf.append(String.format("%d/%d", busy.get(), pool.size()));
+	}
+	return(buf.toString());
+    }
+}
@@ -140,11 +140,13 @@ public class BumpMap extends State {
 
     @VertexBuf.ResName("tan2")
     public static class Tangents extends VertexBuf.FloatData {
+	static {VertexBuf.snapshot(Tangents.class, Tangents::new);}
 	public Tangents(FloatBuffer data) {super(tan, 3, data);}
 	public Tangents(Resource res, Message buf, int nv) {this(VertexBuf.loadbuf2(Utils.wfbuf(nv * 3), buf));}
     }
     @VertexBuf.ResName("bit2")
     public static class BiTangents extends VertexBuf.FloatData {
+	static {VertexBuf.snapshot(BiTangents.class, BiTangents::new);}
 	public BiTangents(FloatBuffer data) {super(bit, 3, data);}
 	public BiTangents(Resource res, Message buf, int nv) {this(VertexBuf.loadbuf2(Utils.wfbuf(nv * 3), buf));}
     }
@@ -78,7 +78,7 @@ public class FoodInfo extends ItemInfo.Tip {
 	
 	public Event(Resource res, double a) {
 	    this.ev = res.flayer(BAttrWnd.FoodMeter.Event.class);
-	    this.img = PUtils.convolve(res.flayer(Resource.imgc).img, imgsz, CharWnd.iconfilter);
+	    this.img = PUtils.convolve(res.flayer(Resource.imgc).img(), imgsz, CharWnd.iconfilter);
 	    this.a = a;
 	    this.res = res.name;
 	}
@@ -142,7 +142,7 @@ public class FoodInfo extends ItemInfo.Tip {
     
     private static BufferedImage renderConstipation(CharacterInfo.Constipation.Data data) {
 	int h = 14;
-	BufferedImage img = data.res.get().layer(Resource.imgc).img;
+	BufferedImage img = data.res.get().layer(Resource.imgc).img();
 	String nm = data.res.get().layer(Resource.tooltip).t;
 	Color col = color(data.value);
 	Text rnm = RichText.render(String.format("%s: $col[%d,%d,%d]{%s%%}", nm, col.getRed(), col.getGreen(), col.getBlue(), Utils.odformat2(100 * data.value, 2)), 0);
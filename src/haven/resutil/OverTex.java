@@ -138,6 +138,7 @@ public class OverTex extends State {
 
     @VertexBuf.ResName("otex2")
     public static class OTexC extends VertexBuf.FloatData {
+	static {VertexBuf.snapshot(OTexC.class, OTexC::new);}
 	public OTexC(FloatBuffer data) {super(otexc, 2, data);}
 	public OTexC(Resource res, Message buf, int nv) {this(VertexBuf.loadbuf2(Utils.wfbuf(nv * 2), buf));}
     }
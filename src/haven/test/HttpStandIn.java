@@ -0,0 +1,273 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven.test;
+
+import haven.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+
+/* A local stand-in for the resource server, checking that fetches
+ * through Http reuse their keep-alive connections, that missing
+ * resources do not cost a connection, that a transfer broken partway
+ * is resumed with a range request conditional on the resource being
+ * unchanged, and that a changed resource is never spliced. */
+public class HttpStandIn extends BaseTest {
+    public final int nthreads, nreqs;
+    public final ServerSocket sk;
+    public final byte[] body, body2;
+    public final AtomicInteger conns = new AtomicInteger(), reqs = new AtomicInteger();
+    public final Collection<String> ranges = new ConcurrentLinkedQueue<>();
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    public boolean ok = true;
+
+    public HttpStandIn(int nthreads, int nreqs) throws IOException {
+	this.nthreads = nthreads;
+	this.nreqs = nreqs;
+	this.sk = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+	this.body = new byte[100000];
+	new Random(1).nextBytes(body);
+	this.body2 = new byte[body.length];
+	new Random(2).nextBytes(body2);
+    }
+
+    private static String line(InputStream in) throws IOException {
+	StringBuilder buf = new StringBuilder();
+	while(true) {
+	    int c = in.read();
+	    if(c < 0)
+		return((buf.length() == 0) ? null : buf.toString());
+	    if(c == '\n')
+		break;
+	    if(c != '\r')
+		buf.append((char)c);
+	}
+	return(buf.toString());
+    }
+
+    private static void respond(OutputStream out, String status, String tag, byte[] data, int off) throws IOException {
+	String head = String.format("HTTP/1.1 %s\r\nContent-Length: %d\r\nContent-Type: application/octet-stream\r\n%s\r\n",
+				    status, data.length - off, (tag == null) ? "" : "ETag: " + tag + "\r\n");
+	out.write(head.getBytes(StandardCharsets.US_ASCII));
+	out.write(data, off, data.length - off);
+	out.flush();
+    }
+
+    /* Serves one connection for as long as the client keeps it. */
+    private void serve(Socket cs) {
+	try(Socket s = cs) {
+	    InputStream in = new BufferedInputStream(s.getInputStream());
+	    OutputStream out = s.getOutputStream();
+	    while(true) {
+		String req = line(in);
+		if(req == null)
+		    break;
+		String range = null, ifrange = null;
+		for(String h = line(in); (h != null) && !h.isEmpty(); h = line(in)) {
+		    if(h.regionMatches(true, 0, "Range:", 0, 6))
+			range = h.substring(6).trim();
+		    else if(h.regionMatches(true, 0, "If-Range:", 0, 9))
+			ifrange = h.substring(9).trim();
+		}
+		reqs.incrementAndGet();
+		String path = req.split(" ")[1];
+		/* Resources under /broken/ and /untagged/ break their
+		 * first transfer, the latter without an entity tag.
+		 * Those under /changed/ also change after it. */
+		boolean first = seen.add(path);
+		String tag = path.startsWith("/untagged/") ? null : "\"v1\"";
+		byte[] data = body;
+		if(path.startsWith("/changed/") && !first) {
+		    tag = "\"v2\"";
+		    data = body2;
+		}
+		if(path.startsWith("/missing/")) {
+		    respond(out, "404 Not Found", null, "no such resource".getBytes(StandardCharsets.US_ASCII), 0);
+		} else if(first && (path.startsWith("/broken/") || path.startsWith("/untagged/") || path.startsWith("/changed/"))) {
+		    /* Promise the whole body, send a part of it, then
+		     * reset the connection. */
+		    String head = String.format("HTTP/1.1 200 OK\r\nContent-Length: %d\r\n%s\r\n",
+						data.length, (tag == null) ? "" : "ETag: " + tag + "\r\n");
+		    out.write(head.getBytes(StandardCharsets.US_ASCII));
+		    out.write(data, 0, 5000);
+		    out.flush();
+		    Thread.sleep(100);
+		    s.setSoLinger(true, 0);
+		    break;
+		} else if(range != null) {
+		    ranges.add(range + " if " + ifrange);
+		    if((ifrange == null) || ifrange.equals(tag)) {
+			int off = Integer.parseInt(range.substring(range.indexOf('=') + 1, range.indexOf('-')));
+			respond(out, "206 Partial Content", tag, data, off);
+		    } else {
+			respond(out, "200 OK", tag, data, 0);
+		    }
+		} else {
+		    respond(out, "200 OK", tag, data, 0);
+		}
+	    }
+	} catch(IOException e) {
+	} catch(InterruptedException e) {
+	}
+    }
+
+    private void listen() {
+	try {
+	    while(true) {
+		Socket cs = sk.accept();
+		conns.incrementAndGet();
+		Thread th = new HackThread(tg, () -> serve(cs), "HTTP stand-in connection");
+		th.setDaemon(true);
+		th.start();
+	    }
+	} catch(IOException e) {
+	}
+    }
+
+    private URL url(String path) throws IOException {
+	return(new URL("http", "127.0.0.1", sk.getLocalPort(), path));
+    }
+
+    private void check(boolean cond, String fmt, Object... args) {
+	printf("%s: %s", cond ? "ok" : "FAILED", String.format(fmt, args));
+	if(!cond)
+	    ok = false;
+    }
+
+    /* Fetches from several threads at once, with every tenth
+     * request for a missing resource. */
+    public void keepalive() throws Exception {
+	ExecutorService exec = Executors.newFixedThreadPool(nthreads);
+	AtomicInteger bad = new AtomicInteger(), missing = new AtomicInteger();
+	int c0 = conns.get(), r0 = reqs.get();
+	try {
+	    List<java.util.concurrent.Future<?>> fs = new ArrayList<>();
+	    for(int i = 0; i < nreqs; i++) {
+		int n = i;
+		fs.add(exec.submit(() -> {
+			    if((n % 10) == 0) {
+				try(InputStream fp = Http.fetch(url("/missing/" + n))) {
+				    bad.incrementAndGet();
+				} catch(FileNotFoundException e) {
+				    missing.incrementAndGet();
+				}
+			    } else {
+				try(InputStream fp = Http.fetch(url("/res/" + n + ".res"), c -> c.setUseCaches(false))) {
+				    if(!Arrays.equals(Utils.readall(fp), body))
+					bad.incrementAndGet();
+				}
+			    }
+			    return(null);
+			}));
+	    }
+	    for(java.util.concurrent.Future<?> f : fs)
+		f.get();
+	} finally {
+	    exec.shutdown();
+	}
+	int nconns = conns.get() - c0, nreq = reqs.get() - r0;
+	check(bad.get() == 0, "%d requests, %d bad", nreq, bad.get());
+	check(missing.get() == (nreqs + 9) / 10, "%d missing resources reported", missing.get());
+	check(nconns <= nthreads, "%d requests from %d threads over %d connections", nreq, nthreads, nconns);
+    }
+
+    public void resume() throws Exception {
+	ranges.clear();
+	byte[] data;
+	try(InputStream fp = Http.fetch(url("/broken/1.res"))) {
+	    data = Utils.readall(fp);
+	}
+	check(Arrays.equals(data, body), "broken transfer completed intact");
+	check(new ArrayList<>(ranges).equals(Collections.singletonList("bytes=5000- if \"v1\"")), "resumed with ranges %s", ranges);
+
+	ranges.clear();
+	try(InputStream fp = Http.fetch(url("/untagged/1.res"))) {
+	    data = Utils.readall(fp);
+	}
+	check(Arrays.equals(data, body), "untagged broken transfer completed intact");
+	check(ranges.isEmpty(), "untagged transfer refetched with ranges %s", ranges);
+
+	ranges.clear();
+	boolean changed = false;
+	try(InputStream fp = Http.fetch(url("/changed/1.res"))) {
+	    Utils.readall(fp);
+	} catch(Http.ChangedException e) {
+	    changed = true;
+	}
+	check(changed, "change during transfer reported");
+	check(new ArrayList<>(ranges).equals(Collections.singletonList("bytes=5000- if \"v1\"")), "changed transfer resumed with ranges %s", ranges);
+    }
+
+    public void run() {
+	Thread srv = new HackThread(tg, this::listen, "HTTP stand-in server");
+	srv.setDaemon(true);
+	srv.start();
+	try {
+	    keepalive();
+	    resume();
+	} catch(Exception e) {
+	    e.printStackTrace();
+	    ok = false;
+	} finally {
+	    try {
+		sk.close();
+	    } catch(IOException e) {
+	    }
+	}
+	printf(ok ? "All checks passed" : "Some checks failed");
+    }
+
+    public static void usage() {
+	System.err.println("usage: HttpStandIn [-t THREADS] [-n REQUESTS]");
+    }
+
+    public static void main(String[] args) throws Exception {
+	PosixArgs opt = PosixArgs.getopt(args, "t:n:");
+	if(opt == null) {
+	    usage();
+	    System.exit(1);
+	}
+	int nthreads = 4, nreqs = 200;
+	for(char c : opt.parsed()) {
+	    switch(c) {
+	    case 't':
+		nthreads = Integer.parseInt(opt.arg);
+		break;
+	    case 'n':
+		nreqs = Integer.parseInt(opt.arg);
+		break;
+	    }
+	}
+	HttpStandIn test = new HttpStandIn(nthreads, nreqs);
+	test.start();
+	test.me.join();
+	System.exit(test.ok ? 0 : 1);
+    }
+}
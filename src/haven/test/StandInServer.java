@@ -0,0 +1,530 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven.test;
+
+import haven.*;
+import java.util.*;
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/* A local stand-in for the game server, speaking just enough of the
+ * session protocol to drive headless clients through scripted
+ * scenarios and measure how the client keeps up. */
+public class StandInServer extends BaseTest {
+    public static final double RETX = 0.2, REPORT = 5.0;
+    public static final int MTU = 1000;
+    public final InetSocketAddress addr;
+    public final double rate;
+    public final Collection<Scenario> scenarios = new ArrayList<>();
+    public final Map<SocketAddress, Client> clients = new HashMap<>();
+    private final DatagramChannel sk;
+    private final ByteBuffer recvbuf = ByteBuffer.allocate(65536);
+
+    public StandInServer(InetSocketAddress addr, double rate) throws IOException {
+	this.addr = addr;
+	this.rate = rate;
+	this.sk = DatagramChannel.open();
+	sk.bind(addr);
+	sk.configureBlocking(false);
+    }
+
+    public static class Stat {
+	public long n;
+	public double sum, max;
+
+	public void add(double v) {
+	    n++;
+	    sum += v;
+	    max = Math.max(max, v);
+	}
+
+	public String toString() {
+	    if(n == 0)
+		return("-");
+	    return(String.format("%.1f/%.1f ms", (sum * 1000) / n, max * 1000));
+	}
+    }
+
+    public static class Pending {
+	public final int seq, type;
+	public final byte[] data;
+	public double first, last;
+	public int retx;
+
+	public Pending(int seq, int type, byte[] data) {
+	    this.seq = seq;
+	    this.type = type;
+	    this.data = data;
+	}
+    }
+
+    public class Client {
+	public final SocketAddress peer;
+	public final String user;
+	public final List<Pending> pending = new LinkedList<>();
+	public final Map<Long, Double> objsent = new HashMap<>();
+	public int tseq, rseq, frame;
+	public long pin, bin, pout, bout;
+	public long lpin, lbin, lpout, lbout;
+	public final Stat relrtt = new Stat(), objrtt = new Stat();
+	public double lastrecv;
+
+	public Client(SocketAddress peer, String user) {
+	    this.peer = peer;
+	    this.user = user;
+	}
+
+	public void send(PMessage msg) {
+	    ByteBuffer buf = ByteBuffer.allocate(msg.size() + 1);
+	    buf.put((byte)msg.type);
+	    msg.fin(buf);
+	    buf.flip();
+	    pout++;
+	    bout += buf.remaining();
+	    try {
+		sk.send(buf, peer);
+	    } catch(IOException e) {
+		/* Treat as packet loss, just as the client does. */
+	    }
+	}
+
+	public void queuerel(int type, Message data) {
+	    Pending p = new Pending(tseq, type, ((MessageBuf)data).fin());
+	    tseq = (tseq + 1) & 0xffff;
+	    pending.add(p);
+	}
+
+	public void newwdg(int id, String type, int parent, Object[] pargs, Object... cargs) {
+	    queuerel(RMessage.RMSG_NEWWDG, new MessageBuf().addint32(id).addstring(type).addint32(parent)
+		     .addlist(pargs).adduint8(Message.T_END).addlist(cargs).adduint8(Message.T_END));
+	}
+
+	public void wdgmsg(int id, String name, Object... args) {
+	    queuerel(RMessage.RMSG_WDGMSG, new MessageBuf().addint32(id).addstring(name).addlist(args));
+	}
+
+	/* Sends due reliable messages, packing as many as fit into
+	 * each datagram. */
+	void sendpending(double now) {
+	    PMessage msg = null;
+	    int nseq = -1;
+	    for(Pending p : pending) {
+		if((p.retx > 0) && (now - p.last < RETX * Math.min(p.retx, 10)))
+		    continue;
+		if((msg != null) && ((p.seq != nseq) || (msg.size() + p.data.length + 3 > MTU))) {
+		    send(msg);
+		    msg = null;
+		}
+		if(msg == null) {
+		    msg = new PMessage(Session.MSG_REL);
+		    msg.adduint16(p.seq);
+		}
+		msg.adduint8(p.type | 0x80).adduint16(p.data.length).addbytes(p.data);
+		nseq = (p.seq + 1) & 0xffff;
+		if(p.retx++ == 0)
+		    p.first = now;
+		p.last = now;
+	    }
+	    if(msg != null)
+		send(msg);
+	}
+
+	void gotack(int seq, double now) {
+	    for(Iterator<Pending> i = pending.iterator(); i.hasNext();) {
+		Pending p = i.next();
+		if((short)(p.seq - seq) > 0)
+		    break;
+		if(p.retx == 1)
+		    relrtt.add(now - p.first);
+		i.remove();
+	    }
+	}
+
+	void handle(PMessage msg, double now) {
+	    lastrecv = now;
+	    switch(msg.type) {
+	    case Session.MSG_SESS: {
+		/* Retransmitted handshake */
+		send((PMessage)new PMessage(Session.MSG_SESS).adduint8(0));
+		break;
+	    }
+	    case Session.MSG_REL: {
+		int seq = msg.uint16();
+		while(!msg.eom()) {
+		    int type = msg.uint8();
+		    if((type & 0x80) != 0)
+			msg.skip(msg.uint16());
+		    else
+			msg.skip();
+		    if((short)(seq - rseq) == 0)
+			rseq = (rseq + 1) & 0xffff;
+		    seq = (seq + 1) & 0xffff;
+		}
+		send((PMessage)new PMessage(Session.MSG_ACK).adduint16((rseq - 1) & 0xffff));
+		break;
+	    }
+	    case Session.MSG_ACK: {
+		gotack(msg.uint16(), now);
+		break;
+	    }
+	    case Session.MSG_OBJACK: {
+		while(!msg.eom()) {
+		    long id = msg.uint32();
+		    msg.int32();
+		    Double sent = objsent.remove(id);
+		    if(sent != null)
+			objrtt.add(now - sent);
+		}
+		break;
+	    }
+	    case Session.MSG_MAPREQ: {
+		Coord gc = msg.coord();
+		for(Scenario s : scenarios)
+		    s.mapreq(this, gc);
+		break;
+	    }
+	    case Session.MSG_CLOSE: {
+		send(new PMessage(Session.MSG_CLOSE));
+		clients.remove(peer);
+		printf("%s: disconnected", user);
+		break;
+	    }
+	    }
+	}
+
+	public String report(double dt) {
+	    String ret = String.format("%s: in %,.0f pkt/s %,.0f B/s, out %,.0f pkt/s %,.0f B/s, rel rtt %s, objack %s, pending %d",
+				       user, (pin - lpin) / dt, (bin - lbin) / dt, (pout - lpout) / dt, (bout - lbout) / dt,
+				       relrtt, objrtt, pending.size());
+	    lpin = pin; lbin = bin; lpout = pout; lbout = bout;
+	    return(ret);
+	}
+    }
+
+    /* Batches object deltas into MSG_OBJDATA datagrams. */
+    public static class ObjWriter {
+	public final Client cl;
+	private PMessage msg = null;
+
+	public ObjWriter(Client cl) {
+	    this.cl = cl;
+	}
+
+	public void add(int fl, long id, int frame, MessageBuf attrs) {
+	    if((msg != null) && (msg.size() + attrs.size() + 10 > MTU))
+		flush();
+	    if(msg == null)
+		msg = new PMessage(Session.MSG_OBJDATA);
+	    msg.adduint8(fl).adduint32(id).addint32(frame);
+	    msg.addbytes(attrs.fin());
+	    msg.adduint8(OCache.OD_END);
+	    cl.objsent.putIfAbsent(id, Utils.rtime());
+	}
+
+	public void flush() {
+	    if(msg != null) {
+		cl.send(msg);
+		msg = null;
+	    }
+	}
+
+	public static MessageBuf attr(MessageBuf buf, int type, MessageBuf data) {
+	    int len = data.size();
+	    buf.adduint8(type | 0x80);
+	    if(len < 0x80)
+		buf.adduint8(len);
+	    else
+		buf.adduint8(0x80).adduint16(len);
+	    buf.addbytes(data.fin());
+	    return(buf);
+	}
+    }
+
+    public static abstract class Scenario {
+	public void start(Client cl) {}
+	public void tick(Client cl, double now, double dt) {}
+	public void mapreq(Client cl, Coord gc) {}
+    }
+
+    /* Moves N gobs in circles around the origin. */
+    public static class Gobs extends Scenario {
+	public final int n;
+
+	public Gobs(int n) {
+	    this.n = n;
+	}
+
+	public void tick(Client cl, double now, double dt) {
+	    ObjWriter out = new ObjWriter(cl);
+	    int frame = ++cl.frame;
+	    for(int i = 0; i < n; i++) {
+		double r = 11 * (5 + (i % 50)), a = (now * 0.1) + (i * 2 * Math.PI / n);
+		Coord2d c = Coord2d.of(Math.cos(a) * r, Math.sin(a) * r);
+		MessageBuf mv = new MessageBuf();
+		mv.addcoord(c.div(OCache.posres).floor());
+		mv.adduint16((int)(((a + Math.PI / 2) / (2 * Math.PI)) * 65536) & 0xffff);
+		out.add((frame == 1) ? 1 : 0, 1000 + i, frame, ObjWriter.attr(new MessageBuf(), OCache.OD_MOVE, mv));
+	    }
+	    out.flush();
+	}
+    }
+
+    /* Pushes N flat grids every tick, invalidating them first so
+     * that the client accepts them unasked. */
+    public static class Grids extends Scenario {
+	public final int n;
+	private int pktid = 0;
+
+	public Grids(int n) {
+	    this.n = n;
+	}
+
+	public static byte[] grid(long id, int tile) {
+	    MessageBuf buf = new MessageBuf();
+	    buf.adduint8(1);
+	    layer(buf, "m", new MessageBuf().addint64(id));
+	    MessageBuf t = new MessageBuf();
+	    t.adduint8(0).addstring("gfx/tiles/grass").adduint16(0);
+	    t.adduint8(1).addstring("gfx/tiles/dirt").adduint16(0);
+	    t.adduint8(255);
+	    for(int i = 0; i < MCache.cmaps.x * MCache.cmaps.y; i++)
+		t.adduint8((i + tile) % 2);
+	    layer(buf, "t", t);
+	    layer(buf, "h", new MessageBuf().adduint8(0).addfloat32(0));
+	    return(buf.fin());
+	}
+
+	private static void layer(MessageBuf buf, String name, Message data) {
+	    byte[] d = ((MessageBuf)data).fin();
+	    buf.addstring(name);
+	    if(d.length < 0x80)
+		buf.adduint8(d.length);
+	    else
+		buf.adduint8(0x80).addint32(d.length);
+	    buf.addbytes(d);
+	}
+
+	public void send(Client cl, Coord gc, int tile) {
+	    byte[] data = grid(((long)gc.x << 32) | (gc.y & 0xffffffffl), tile);
+	    int id = pktid++;
+	    for(int off = 0; off < data.length; off += MTU - 16) {
+		int len = Math.min(MTU - 16, data.length - off);
+		PMessage msg = new PMessage(Session.MSG_MAPDATA);
+		msg.addint32(id).adduint16(off).adduint16(data.length);
+		msg.addbytes(data, off, len);
+		cl.send(msg);
+	    }
+	}
+
+	public void tick(Client cl, double now, double dt) {
+	    int w = (int)Math.ceil(Math.sqrt(n));
+	    for(int i = 0; i < n; i++) {
+		Coord gc = Coord.of(i % w, i / w);
+		cl.queuerel(RMessage.RMSG_MAPIV, new MessageBuf().adduint8(0).addcoord(gc));
+	    }
+	}
+
+	public void mapreq(Client cl, Coord gc) {
+	    send(cl, gc, cl.frame++);
+	}
+    }
+
+    /* Creates N labels and updates all of them every tick. */
+    public static class Widgets extends Scenario {
+	public final int n;
+	private int gen = 0;
+
+	public Widgets(int n) {
+	    this.n = n;
+	}
+
+	public void start(Client cl) {
+	    cl.newwdg(1, "cnt", 0, new Object[] {Coord.z}, Coord.of(800, 600));
+	    for(int i = 0; i < n; i++)
+		cl.newwdg(2 + i, "lbl", 1, new Object[] {Coord.of(0, i * 10)}, "0");
+	}
+
+	public void tick(Client cl, double now, double dt) {
+	    gen++;
+	    for(int i = 0; i < n; i++)
+		cl.wdgmsg(2 + i, "set", Integer.toString(gen));
+	}
+    }
+
+    public static Scenario parsescen(String spec) {
+	int p = spec.indexOf(':');
+	String nm = (p < 0) ? spec : spec.substring(0, p);
+	int n = (p < 0) ? 100 : Integer.parseInt(spec.substring(p + 1));
+	switch(nm) {
+	case "gobs":    return(new Gobs(n));
+	case "grids":   return(new Grids(n));
+	case "widgets": return(new Widgets(n));
+	default: throw(new IllegalArgumentException("unknown scenario: " + nm));
+	}
+    }
+
+    private void handshake(SocketAddress peer, PMessage msg) {
+	msg.uint16();
+	String proto = msg.string();
+	int pver = msg.uint16();
+	String user = msg.string();
+	PMessage ret = new PMessage(Session.MSG_SESS);
+	if(pver != Session.PVER) {
+	    ret.adduint8(Session.SESSERR_PVER);
+	} else {
+	    ret.adduint8(0);
+	    Client cl = new Client(peer, user);
+	    clients.put(peer, cl);
+	    for(Scenario s : scenarios)
+		s.start(cl);
+	    printf("%s: connected (%s)", user, proto);
+	}
+	ByteBuffer buf = ByteBuffer.allocate(ret.size() + 1);
+	buf.put((byte)ret.type);
+	ret.fin(buf);
+	buf.flip();
+	try {
+	    sk.send(buf, peer);
+	} catch(IOException e) {
+	}
+    }
+
+    private void receive(double now) throws IOException {
+	while(true) {
+	    recvbuf.clear();
+	    SocketAddress peer = sk.receive(recvbuf);
+	    if(peer == null)
+		break;
+	    recvbuf.flip();
+	    int len = recvbuf.remaining();
+	    if(len < 1)
+		continue;
+	    int type = recvbuf.get() & 0xff;
+	    byte[] data = new byte[len - 1];
+	    recvbuf.get(data);
+	    PMessage msg = new PMessage(type, data);
+	    Client cl = clients.get(peer);
+	    if(cl == null) {
+		if(type == Session.MSG_SESS)
+		    handshake(peer, msg);
+		continue;
+	    }
+	    cl.pin++;
+	    cl.bin += len;
+	    try {
+		cl.handle(msg, now);
+	    } catch(Message.BinError e) {
+		printf("%s: malformed message: %s", cl.user, e);
+	    }
+	}
+    }
+
+    public void run() {
+	try(Selector sel = Selector.open()) {
+	    sk.register(sel, SelectionKey.OP_READ);
+	    double last = Utils.rtime(), lastrep = last;
+	    while(true) {
+		double now = Utils.rtime();
+		double to = Math.max(0, last + (1.0 / rate) - now);
+		sel.selectedKeys().clear();
+		sel.select(Math.max(1, (long)(to * 1000)));
+		if(Thread.interrupted())
+		    break;
+		now = Utils.rtime();
+		receive(now);
+		if(now - last >= 1.0 / rate) {
+		    double dt = now - last;
+		    for(Client cl : new ArrayList<>(clients.values())) {
+			if(now - cl.lastrecv > 30) {
+			    printf("%s: timed out", cl.user);
+			    clients.remove(cl.peer);
+			    continue;
+			}
+			for(Scenario s : scenarios)
+			    s.tick(cl, now, dt);
+		    }
+		    last = now;
+		}
+		for(Client cl : clients.values())
+		    cl.sendpending(now);
+		if(now - lastrep >= REPORT) {
+		    for(Client cl : clients.values())
+			printf("%s", cl.report(now - lastrep));
+		    lastrep = now;
+		}
+	    }
+	} catch(ClosedByInterruptException e) {
+	} catch(IOException e) {
+	    throw(new RuntimeException(e));
+	} finally {
+	    try {
+		sk.close();
+	    } catch(IOException e) {
+	    }
+	}
+    }
+
+    public static void usage() {
+	System.err.println("usage: StandInServer [-p PORT] [-r RATE] [-c CLIENTS] SCENARIO[:N]...");
+	System.err.println("scenarios: gobs, grids, widgets");
+    }
+
+    public static void main(String[] args) throws IOException {
+	PosixArgs opt = PosixArgs.getopt(args, "p:r:c:");
+	if((opt == null) || (opt.rest.length < 1)) {
+	    usage();
+	    System.exit(1);
+	}
+	int port = 1870, nclients = 0;
+	double rate = 10;
+	for(char c : opt.parsed()) {
+	    switch(c) {
+	    case 'p':
+		port = Integer.parseInt(opt.arg);
+		break;
+	    case 'r':
+		rate = Double.parseDouble(opt.arg);
+		break;
+	    case 'c':
+		nclients = Integer.parseInt(opt.arg);
+		break;
+	    }
+	}
+	InetSocketAddress addr = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+	StandInServer srv = new StandInServer(addr, rate);
+	for(String spec : opt.rest)
+	    srv.scenarios.add(parsescen(spec));
+	srv.start();
+	for(int i = 0; i < nclients; i++) {
+	    TestClient c = new TestClient("test" + (i + 1));
+	    c.addr = addr;
+	    c.start();
+	}
+    }
+}
@@ -113,6 +113,18 @@ public class TestClient implements Runnable, UI.Context {
 	    }
 	    super.uimsg(id, msg, args);
 	}
+
+	public void uimsg(int id, String msg, PMessage args) {
+	    Widget w = getwidget(id);
+	    synchronized(robots) {
+		if(!robots.isEmpty()) {
+		    Object[] dargs = args.borrow().list();
+		    for(Robot r : robots)
+			r.uimsg(id, w, msg, dargs);
+		}
+	    }
+	    super.uimsg(id, msg, args);
+	}
     }
 
     public void run() {
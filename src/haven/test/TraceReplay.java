@@ -0,0 +1,107 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven.test;
+
+import haven.*;
+import java.io.*;
+import java.nio.file.*;
+
+/* Replays a recorded session trace into a headless client, ticking
+ * the world like the main loop would, and reports how long the
+ * ticks took. */
+public class TraceReplay extends BaseTest {
+    public final Path trace;
+    public final boolean realtime;
+    public final double rate;
+
+    public TraceReplay(Path trace, boolean realtime, double rate) {
+	this.trace = trace;
+	this.realtime = realtime;
+	this.rate = rate;
+    }
+
+    public void run() {
+	TestClient c = new TestClient("replay") {
+		public void connect() {
+		    try {
+			sess = Session.replay(new SessionTrace.Reader(trace), user, realtime);
+		    } catch(IOException e) {
+			throw(new RuntimeException(e));
+		    }
+		}
+	    };
+	double start = Utils.rtime();
+	int ticks = 0;
+	double ttime = 0, tmax = 0;
+	c.start();
+	try {
+	    while(c.alive()) {
+		Thread.sleep((long)(1000 / rate));
+		Session sess = c.sess;
+		if(sess == null)
+		    continue;
+		double t0 = Utils.rtime();
+		sess.glob.ctick();
+		double t = Utils.rtime() - t0;
+		ttime += t;
+		tmax = Math.max(tmax, t);
+		ticks++;
+	    }
+	} catch(InterruptedException e) {
+	    c.stop();
+	}
+	c.join();
+	printf("Replayed %s in %.3f s", trace, Utils.rtime() - start);
+	if(ticks > 0)
+	    printf("%d ticks, %.3f ms mean, %.3f ms max", ticks, (ttime * 1000) / ticks, tmax * 1000);
+    }
+
+    public static void usage() {
+	System.err.println("usage: TraceReplay [-r] [-t RATE] TRACE");
+    }
+
+    public static void main(String[] args) {
+	PosixArgs opt = PosixArgs.getopt(args, "rt:");
+	if((opt == null) || (opt.rest.length != 1)) {
+	    usage();
+	    System.exit(1);
+	}
+	boolean realtime = false;
+	double rate = 60;
+	for(char c : opt.parsed()) {
+	    switch(c) {
+	    case 'r':
+		realtime = true;
+		break;
+	    case 't':
+		rate = Double.parseDouble(opt.arg);
+		break;
+	    }
+	}
+	new TraceReplay(Utils.path(opt.rest[0]), realtime, rate).start();
+    }
+}
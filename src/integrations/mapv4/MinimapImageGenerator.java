@@ -20,7 +20,7 @@ public class MinimapImageGenerator {
             Resource.Image ir = r.layer(Resource.imgc);
             if (ir == null)
                 return (null);
-            img = ir.img;
+            img = ir.img();
             texes[t] = img;
         }
         return (img);
@@ -91,9 +91,8 @@ public class AnimalFarm {
     
     enum AnimalActions {
 	Highlight("Show", (gui, id) -> () -> {
-	    gui.ui.sess.glob.oc.stream()
-		.filter(gob -> gob.id == id)
-		.forEach(Gob::highlight);
+	    Gob gob = gui.ui.sess.glob.oc.getgob(id);
+	    if(gob != null) {gob.highlight();}
 	}),
 	Shoo("Shoo", flower("Shoo")),
 	Slaughter("Kill", flower("Slaughter")),
@@ -15,7 +15,7 @@ import java.util.Set;
 
 import static haven.Buff.*;
 
-public class GobCombatInfo extends GAttrib implements RenderTree.Node, PView.Render2D {
+public class GobCombatInfo extends GAttrib implements RenderTree.Node, PView.Render2D, GAttrib.ExactTick {
     public static final Coord STANCE_SZ = UI.scale(32, 32);
     public static final Coord PROGRESS_SZ = Coord.of(STANCE_SZ.x, UI.scale(6));
     public static final Coord PROGRESS_SZ2 = PROGRESS_SZ.div(2);
@@ -146,7 +146,7 @@ public class GobCombatInfo extends GAttrib implements RenderTree.Node, PView.Ren
 	    return sizedCache.get(res.name);
 	}
 	
-	TexI tex = new TexI(PUtils.convolvedown(res.layer(Resource.imgc).img, STANCE_SZ, CharWnd.iconfilter));
+	TexI tex = new TexI(PUtils.convolvedown(res.layer(Resource.imgc).img(), STANCE_SZ, CharWnd.iconfilter));
 	sizedCache.put(res.name, tex);
 	return tex;
     }
@@ -101,7 +101,7 @@ public class GobTimerData {
     
     public BufferedImage img() {
 	if(GobInfoOpts.disabled(InfoPart.TIMER)) {return null;}
-	return Optional.ofNullable(text.get()).map(t -> t.back).orElse(null);
+	return Optional.ofNullable(text.get()).map(t -> t.back()).orElse(null);
     }
     
 }
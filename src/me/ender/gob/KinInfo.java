@@ -3,6 +3,7 @@ package me.ender.gob;
 import haven.*;
 import haven.res.ui.obj.buddy.Buddy;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,13 +35,12 @@ public class KinInfo {
 	}
     }
     
-    public static KinInfo from(Gob gob, Map<Class<? extends GAttrib>, GAttrib> attrs) {
+    public static KinInfo from(Gob gob, Collection<GAttrib> attrs) {
 	Buddy buddy = null;
 	GAttrib villager = null;
 	if(VILLAGER == null) {
-	    for (Map.Entry<Class<? extends GAttrib>, GAttrib> entry : attrs.entrySet()) {
-		Class<? extends GAttrib> key = entry.getKey();
-		GAttrib value = entry.getValue();
+	    for (GAttrib value : attrs) {
+		Class<? extends GAttrib> key = GAttrib.attrclass(value.getClass());
 		if(value instanceof Buddy) {
 		    buddy = (Buddy) value;
 		}
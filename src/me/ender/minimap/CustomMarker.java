@@ -104,10 +104,10 @@ public class CustomMarker extends Marker {
 	    }
 	    
 	    WritableRaster buf = PUtils.imgraster(sz);
-	    PUtils.blit(buf, PUtils.coercergba(bg.img).getRaster(), bg.o);
+	    PUtils.blit(buf, PUtils.coercergba(bg.img()).getRaster(), bg.o);
 	    PUtils.colmul(buf, col);
 	    if(fg != null) {
-		PUtils.alphablit(buf, PUtils.coercergba(fg.img).getRaster(), fg.o);
+		PUtils.alphablit(buf, PUtils.coercergba(fg.img()).getRaster(), fg.o);
 	    }
 	    
 	    this.tex = new TexI(PUtils.uiscale(PUtils.rasterimg(buf), new Coord(iconsz, iconsz)));